@@ -0,0 +1,42 @@
+package com.dg.ssrl;
+
+/**
+ * Times a piece of work after warming it up. Benchmarks are plain main classes run by Benchmarks, they print their
+ * numbers instead of asserting on them because timings depend on the machine.
+ */
+abstract class Benchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 7;
+
+    // results are folded in here so the JIT can't drop the measured work
+    static volatile long sink;
+
+    /**
+     * Runs the measured work operations times and returns anything derived from its results.
+     */
+    abstract long run(int operations);
+
+    /**
+     * Best time of several rounds in nanoseconds per operation.
+     */
+    double nanosPerOperation(int operations) {
+        return nanosPerOperation(operations, WARMUP_ROUNDS, ROUNDS);
+    }
+
+    /**
+     * Same with fewer rounds, for work that takes seconds per operation.
+     */
+    double nanosPerOperation(int operations, int warmupRounds, int rounds) {
+        for (int i = 0; i < warmupRounds; i++) {
+            sink += run(operations);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            sink += run(operations);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (double) operations;
+    }
+}
@@ -0,0 +1,30 @@
+package com.dg.ssrl;
+
+/**
+ * Runs the benchmarks named on the command line, or all of them.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) {
+        String[] names = args.length > 0 ? args : new String[] {
+                "ComponentLookupBenchmark",
+                "ComponentStoreBenchmark",
+                "CombatAllocationCheck",
+                "ConcurrentResolutionCheck",
+                "DijkstraBenchmark",
+                "DistanceTableBenchmark",
+                "GoalRepairBenchmark",
+                "ReachableFreeCellCheck",
+                "FieldOfViewBenchmark",
+                "SchedulerBenchmark"
+        };
+        for (String name : names) {
+            try {
+                Class.forName("com.dg.ssrl." + name).getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+            } catch (Exception e) {
+                throw new RuntimeException("Can't run benchmark " + name, e);
+            }
+            System.out.println();
+        }
+    }
+}
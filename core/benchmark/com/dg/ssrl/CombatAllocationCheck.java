@@ -0,0 +1,97 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import java.lang.management.ManagementFactory;
+
+import static com.dg.ssrl.Components.Stats;
+
+/**
+ * Counts the bytes allocated by combat turns once pools are warm: a bump, a step, a bullet and a rocket, each played
+ * out frame by frame until its animations and explosions are done. Fails if a turn allocates anything.
+ *
+ * Runs without a backend, so there are no textures or sounds. Brains are kept from acting by locking the scheduler,
+ * the turns call BrainCore directly.
+ */
+public class CombatAllocationCheck {
+
+    private static final float FRAME = 1f / 60f;
+    private static final int FRAMES_PER_ACTION = 90;
+    private static final int WARMUP_TURNS = 2000;
+    private static final int TURNS = 5000;
+    private static final int MAX_ALLOCATING_TURNS = TURNS / 100;
+
+    private static final ComponentMapper<Stats> statsMapper = ComponentMapper.getFor(Stats.class);
+
+    public static void main(String[] args) {
+        Assets assets = new Assets();
+        EntityFactory entityFactory = new EntityFactory(assets);
+        Scheduler scheduler = new Scheduler();
+        scheduler.lock();
+        World world = new World(10, 10, entityFactory, scheduler, 1, Color.WHITE);
+
+        Entity attacker = entityFactory.makeMonster(2, 2, MonsterType.Brute);
+        Entity shooter = entityFactory.makeMonster(2, 5, MonsterType.Cannon);
+        Entity walker = entityFactory.makeMonster(2, 8, MonsterType.Crawler);
+        Entity target = entityFactory.makeMonster(3, 2, MonsterType.Brute);
+        Entity shotTarget = entityFactory.makeMonster(6, 5, MonsterType.Brute);
+        for (Entity entity : new Entity[] {target, shotTarget}) {
+            // survives any hit, healed after every turn
+            entity.addComponent(new Stats(MonsterType.Brute, new Stats.OnDied() {
+                @Override
+                public void onDied() {
+                }
+            }));
+        }
+        for (Entity entity : new Entity[] {attacker, shooter, walker, target, shotTarget}) {
+            world.addEntity(entity);
+        }
+
+        for (int i = 0; i < WARMUP_TURNS; i++) {
+            turn(world, attacker, shooter, walker, target, shotTarget, assets.sounds, i);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        int allocatingTurns = 0;
+        for (int i = 0; i < TURNS; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            turn(world, attacker, shooter, walker, target, shotTarget, assets.sounds, i);
+            long bytes = threads.getThreadAllocatedBytes(threadId) - before;
+            if (bytes > 0) {
+                allocated += bytes;
+                allocatingTurns++;
+            }
+        }
+
+        System.out.println("Combat allocation, bytes per turn (bump, step, bullet, rocket)");
+        System.out.printf("  %.2f (%d bytes on %d of %d turns)%n", allocated / (double) TURNS, allocated, allocatingTurns,
+                TURNS);
+        // allocating code shows up on every turn; the JIT recompiling a method now and then, which does not happen
+        // with -Xint, shows up on a handful
+        if (allocatingTurns > MAX_ALLOCATING_TURNS) {
+            throw new RuntimeException("Combat turns allocate, " + allocatingTurns + " of " + TURNS + " turns");
+        }
+    }
+
+    private static void turn(World world, Entity attacker, Entity shooter, Entity walker, Entity target, Entity shotTarget,
+                             Assets.Sounds sounds, int turn) {
+        BrainCore.move(world, attacker, Direction.EAST, MonsterType.Brute, sounds);
+        play(world);
+        // alternates between turning around and stepping
+        BrainCore.move(world, walker, turn % 4 < 2 ? Direction.EAST : Direction.WEST, MonsterType.Crawler, sounds);
+        play(world);
+        BrainCore.fire(world, shooter, Direction.EAST, ItemType.Ammo, sounds);
+        play(world);
+        BrainCore.fire(world, shooter, Direction.EAST, ItemType.Rocket, sounds);
+        play(world);
+        statsMapper.get(target).heal(MonsterType.Brute.hitPoints);
+        statsMapper.get(shotTarget).heal(MonsterType.Brute.hitPoints);
+    }
+
+    private static void play(World world) {
+        for (int frame = 0; frame < FRAMES_PER_ACTION; frame++) {
+            world.update(FRAME);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.dg.ssrl;
+
+import java.util.HashMap;
+
+import static com.dg.ssrl.Components.ItemContainer;
+import static com.dg.ssrl.Components.MoveAnimation;
+import static com.dg.ssrl.Components.Position;
+import static com.dg.ssrl.Components.Solid;
+import static com.dg.ssrl.Components.Stats;
+import static com.dg.ssrl.Entity.Component;
+
+/**
+ * Component lookups as a brain does them every turn: the HashMap keyed by class that Entity used before component
+ * types had indices, Entity.getComponent(Class) and ComponentMapper.get.
+ */
+public class ComponentLookupBenchmark {
+
+    private static final int ENTITY_COUNT = 256;
+    private static final int OPERATIONS = 1000000;
+
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+    private static final ComponentMapper<Stats> statsMapper = ComponentMapper.getFor(Stats.class);
+    private static final ComponentMapper<MoveAnimation> moveAnimationMapper = ComponentMapper.getFor(MoveAnimation.class);
+
+    public static void main(String[] args) {
+        final Entity[] entities = new Entity[ENTITY_COUNT];
+        final HashMap<Class<? extends Component>, Component>[] maps = newMaps(ENTITY_COUNT);
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            Component[] components = {new Position(i, i), new Solid(true), new Stats(MonsterType.Crawler, null),
+                    new MoveAnimation(50f), new ItemContainer()};
+            entities[i] = new Entity(i);
+            maps[i] = new HashMap<Class<? extends Component>, Component>();
+            for (Component component : components) {
+                entities[i].addComponent(component);
+                maps[i].put(component.getClass(), component);
+            }
+        }
+
+        double hashMap = new Benchmark() {
+            @Override
+            long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    HashMap<Class<? extends Component>, Component> map = maps[i & (ENTITY_COUNT - 1)];
+                    sum += ((Position) map.get(Position.class)).x;
+                    sum += ((Stats) map.get(Stats.class)).getHealth();
+                    sum += ((MoveAnimation) map.get(MoveAnimation.class)).direction.index;
+                }
+                return sum;
+            }
+        }.nanosPerOperation(OPERATIONS);
+
+        double byClass = new Benchmark() {
+            @Override
+            long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    Entity entity = entities[i & (ENTITY_COUNT - 1)];
+                    sum += entity.getComponent(Position.class).x;
+                    sum += entity.getComponent(Stats.class).getHealth();
+                    sum += entity.getComponent(MoveAnimation.class).direction.index;
+                }
+                return sum;
+            }
+        }.nanosPerOperation(OPERATIONS);
+
+        double mapper = new Benchmark() {
+            @Override
+            long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    Entity entity = entities[i & (ENTITY_COUNT - 1)];
+                    sum += positionMapper.get(entity).x;
+                    sum += statsMapper.get(entity).getHealth();
+                    sum += moveAnimationMapper.get(entity).direction.index;
+                }
+                return sum;
+            }
+        }.nanosPerOperation(OPERATIONS);
+
+        System.out.println("Component lookup, ns per 3 lookups");
+        System.out.printf("  HashMap by class        %6.1f%n", hashMap);
+        System.out.printf("  getComponent(Class)     %6.1f%n", byClass);
+        System.out.printf("  ComponentMapper         %6.1f%n", mapper);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HashMap<Class<? extends Component>, Component>[] newMaps(int count) {
+        return (HashMap<Class<? extends Component>, Component>[]) new HashMap<?, ?>[count];
+    }
+}
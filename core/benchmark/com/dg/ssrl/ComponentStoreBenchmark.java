@@ -0,0 +1,174 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+import static com.dg.ssrl.Components.Effect;
+import static com.dg.ssrl.Components.MoveAnimation;
+import static com.dg.ssrl.Components.Sprite;
+
+/**
+ * Reading what the map renderer draws of every sprite entity: the old walk over the sprite family through the
+ * component mappers, once per render pass, against refreshing the ComponentStore and walking its arrays once. The
+ * store is checked against the components after a run of random adds and removes first. Entities are a random mix
+ * of monsters, items and explosions, one render pass each.
+ *
+ * Runs without a backend, so there are no textures.
+ */
+public class ComponentStoreBenchmark {
+
+    private static final int[] ENTITY_COUNTS = {100, 1000, 4000};
+    private static final int ENTITIES_PER_ROUND = 2000000;
+
+    private static final ComponentMapper<Sprite> spriteMapper = ComponentMapper.getFor(Sprite.class);
+    private static final ComponentMapper<MoveAnimation> moveAnimationMapper = ComponentMapper.getFor(MoveAnimation.class);
+    private static final ComponentMapper<Effect> effectMapper = ComponentMapper.getFor(Effect.class);
+
+    public static void main(String[] args) {
+        EntityFactory entityFactory = new EntityFactory(new Assets());
+        System.out.println("Sprite entity reads per frame, us");
+        System.out.println("  entities   mappers  refresh + walk   walk");
+        for (int entityCount : ENTITY_COUNTS) {
+            World world = new World(64, 64, entityFactory, new Scheduler(), 1, Color.WHITE);
+            final Family family = Family.all(Sprite.class);
+            final ComponentStore store = new ComponentStore();
+            Random random = new Random(entityCount);
+            while (family.size() < entityCount) {
+                if (family.size() > 0 && random.nextInt(3) == 0) {
+                    Entity entity = family.get(random.nextInt(family.size()));
+                    family.remove(entity);
+                    store.remove(entity);
+                } else {
+                    Entity entity = makeEntity(entityFactory, random);
+                    world.addEntity(entity);
+                    family.add(entity);
+                    store.add(entity);
+                }
+            }
+            check(family, store);
+
+            int operations = Math.max(1, ENTITIES_PER_ROUND / entityCount);
+            double mappers = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        sum += readThroughMappers(family);
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(operations);
+            double refreshAndWalk = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        store.refresh();
+                        sum += readStore(store);
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(operations);
+            double walk = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        sum += readStore(store);
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(operations);
+
+            System.out.printf("  %8d %9.1f %15.1f %6.1f%n", entityCount, mappers / 1000, refreshAndWalk / 1000, walk / 1000);
+        }
+    }
+
+    private static Entity makeEntity(EntityFactory entityFactory, Random random) {
+        int x = random.nextInt(64);
+        int y = random.nextInt(64);
+        switch (random.nextInt(3)) {
+            case 0:
+                return entityFactory.makeMonster(x, y, MonsterType.Crawler);
+            case 1:
+                return entityFactory.makeItem(x, y, ItemType.Ammo);
+            default:
+                return entityFactory.makeExplosion(x * Assets.TILE_SIZE, y * Assets.TILE_SIZE, Color.WHITE);
+        }
+    }
+
+    // one row per entity of the family, in render pass order, each matching the components of its entity
+    private static void check(Family family, ComponentStore store) {
+        IdentityHashMap<Sprite, Entity> entitiesBySprite = new IdentityHashMap<Sprite, Entity>();
+        for (int i = 0; i < family.size(); i++) {
+            entitiesBySprite.put(spriteMapper.get(family.get(i)), family.get(i));
+        }
+        if (store.size() != family.size()) {
+            throw new RuntimeException("Store has " + store.size() + " rows for " + family.size() + " sprite entities");
+        }
+        int renderPass = 0;
+        for (int row = 0; row < store.size(); row++) {
+            Sprite sprite = store.getSprite(row);
+            Entity entity = entitiesBySprite.remove(sprite);
+            if (entity == null || sprite.renderPass < renderPass) {
+                throw new RuntimeException("Store row " + row + " is out of render pass order or not in the family");
+            }
+            renderPass = sprite.renderPass;
+            MoveAnimation moveAnimation = moveAnimationMapper.get(entity);
+            boolean same = store.getEffect(row) == effectMapper.get(entity) && store.isAlive(row)
+                    && store.isAnimated(row) == (moveAnimation != null)
+                    && (moveAnimation == null || (store.getDirection(row) == moveAnimation.direction
+                    && store.getX(row) == moveAnimation.bounds.x && store.getY(row) == moveAnimation.bounds.y));
+            if (!same) {
+                throw new RuntimeException("Store row " + row + " doesn't match entity " + entity);
+            }
+        }
+    }
+
+    // what MapRenderer used to do: one walk over the family per render pass until no sprite is left for a later one
+    private static long readThroughMappers(Family family) {
+        long sum = 0;
+        int renderPass = 0;
+        boolean needAnotherRenderPass = true;
+        while (needAnotherRenderPass) {
+            needAnotherRenderPass = false;
+            for (int i = 0; i < family.size(); i++) {
+                Entity entity = family.get(i);
+                if (entity.alive) {
+                    Sprite sprite = spriteMapper.get(entity);
+                    if (sprite.renderPass == renderPass) {
+                        MoveAnimation moveAnimation = moveAnimationMapper.get(entity);
+                        if (moveAnimation != null) {
+                            sum += (long) (moveAnimation.bounds.x + moveAnimation.bounds.y) + moveAnimation.direction.ordinal();
+                        }
+                        if (effectMapper.get(entity) != null) {
+                            sum++;
+                        }
+                    } else if (sprite.renderPass > renderPass) {
+                        needAnotherRenderPass = true;
+                    }
+                }
+            }
+            renderPass++;
+        }
+        return sum;
+    }
+
+    private static long readStore(ComponentStore store) {
+        long sum = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (!store.isAlive(row)) {
+                continue;
+            }
+            if (store.isAnimated(row)) {
+                sum += (long) (store.getX(row) + store.getY(row)) + store.getDirection(row).ordinal();
+            }
+            if (store.getEffect(row) != null) {
+                sum++;
+            }
+        }
+        return sum;
+    }
+}
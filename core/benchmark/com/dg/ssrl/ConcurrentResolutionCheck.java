@@ -0,0 +1,246 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import static com.dg.ssrl.Components.Actor;
+import static com.dg.ssrl.Components.MoveAnimation;
+import static com.dg.ssrl.Components.Position;
+import static com.dg.ssrl.Components.Stats;
+
+/**
+ * Plays overlapping animations through the scheduler, frame by frame, and checks they resolve as if they had played
+ * one after another. A shooter fires along a row at a target that an attacker keeps bumping, a second shooter fires
+ * at the attacker from behind, a crosser steps in and out of the line of fire and a walker elsewhere goes back and
+ * forth. Fails if anybody steps into the path of a shot in flight, if a shot or bump starts on a locked actor, if an
+ * actor takes other damage than the shots and bumps decided when they started, if the walker never acts while a shot
+ * is in flight or if a lock or reservation is left when everything has landed.
+ *
+ * Runs without a backend, so there are no textures or sounds.
+ */
+public class ConcurrentResolutionCheck {
+
+    private static final float FRAME = 1f / 60f;
+    private static final int FRAMES = 6000;
+    private static final int DRAIN_FRAMES = 300;
+    private static final int ROW = 3;
+
+    private static final ComponentMapper<Actor> actorMapper = ComponentMapper.getFor(Actor.class);
+    private static final ComponentMapper<Stats> statsMapper = ComponentMapper.getFor(Stats.class);
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+    private static final ComponentMapper<MoveAnimation> moveAnimationMapper = ComponentMapper.getFor(MoveAnimation.class);
+
+    private static Assets.Sounds sounds;
+    private static boolean stopped;
+    private static Entity[] victims;
+    private static int[] expectedDamage;
+    private static int shots;
+    private static int bumps;
+    private static int crosserHits;
+    private static int crosserWaits;
+    private static int walkerActsDuringShots;
+
+    public static void main(String[] args) {
+        Assets assets = new Assets();
+        sounds = assets.sounds;
+        EntityFactory entityFactory = new EntityFactory(assets);
+        final Scheduler scheduler = new Scheduler();
+        final World world = new World(12, 7, entityFactory, scheduler, 1, Color.WHITE);
+
+        Entity shooter = entityFactory.makeMonster(1, ROW, MonsterType.Cannon);
+        final Entity target = entityFactory.makeMonster(8, ROW, MonsterType.Brute);
+        final Entity attacker = entityFactory.makeMonster(9, ROW, MonsterType.Brute);
+        Entity counterShooter = entityFactory.makeMonster(11, ROW, MonsterType.Cannon);
+        final Entity crosser = entityFactory.makeMonster(4, ROW - 1, MonsterType.Brute);
+        final Entity walker = entityFactory.makeMonster(2, 6, MonsterType.Crawler);
+        Entity[] entities = {shooter, target, attacker, counterShooter, crosser, walker};
+        victims = new Entity[] {target, attacker, crosser};
+        expectedDamage = new int[victims.length];
+        for (Entity entity : victims) {
+            // survives any hit, healed every frame once its damage is counted
+            entity.addComponent(new Stats(MonsterType.Brute, new Stats.OnDied() {
+                @Override
+                public void onDied() {
+                }
+            }));
+        }
+
+        ShooterBrain shooterBrain = new ShooterBrain(shooter, Direction.EAST, crosser);
+        ShooterBrain counterShooterBrain = new ShooterBrain(counterShooter, Direction.WEST, null);
+        ShooterBrain[] shooterBrains = {shooterBrain, counterShooterBrain};
+        actorMapper.get(shooter).brain = shooterBrain;
+        actorMapper.get(counterShooter).brain = counterShooterBrain;
+        final Actor shooterActor = actorMapper.get(shooter);
+        actorMapper.get(target).brain = new Actor.Brain() {
+            @Override
+            public boolean act(World world) {
+                return true;
+            }
+        };
+        actorMapper.get(attacker).brain = new Actor.Brain() {
+            @Override
+            public boolean act(World world) {
+                if (stopped) {
+                    return true;
+                }
+                if (moveAnimationMapper.get(attacker).isBusy()) {
+                    return false;
+                }
+                boolean targetLocked = world.getScheduler().isLocked(actorMapper.get(target));
+                BrainCore.MoveResult moveResult = BrainCore.move(world, attacker, Direction.WEST, MonsterType.Brute, sounds);
+                if (moveResult.acted && !moveResult.moved) {
+                    if (targetLocked) {
+                        throw new RuntimeException("Bumped a locked actor");
+                    }
+                    expectedDamage[0] += MonsterType.Brute.bumpDamage;
+                    bumps++;
+                }
+                return moveResult.acted;
+            }
+        };
+        actorMapper.get(crosser).brain = new Actor.Brain() {
+            private Direction direction = Direction.NORTH;
+
+            @Override
+            public boolean act(World world) {
+                if (stopped) {
+                    return true;
+                }
+                if (moveAnimationMapper.get(crosser).isBusy()) {
+                    return false;
+                }
+                BrainCore.MoveResult moveResult = BrainCore.move(world, crosser, direction, MonsterType.Brute, sounds);
+                if (moveResult.moved) {
+                    direction = direction.opposite();
+                } else if (!moveResult.turned) {
+                    crosserWaits++;
+                }
+                return moveResult.acted;
+            }
+        };
+        actorMapper.get(walker).brain = new Actor.Brain() {
+            private Direction direction = Direction.EAST;
+
+            @Override
+            public boolean act(World world) {
+                if (stopped) {
+                    return true;
+                }
+                if (moveAnimationMapper.get(walker).isBusy()) {
+                    return false;
+                }
+                if (scheduler.isLocked(shooterActor)) {
+                    walkerActsDuringShots++;
+                }
+                BrainCore.MoveResult moveResult = BrainCore.move(world, walker, direction, MonsterType.Crawler, sounds);
+                if (moveResult.moved) {
+                    direction = direction.opposite();
+                }
+                return moveResult.acted;
+            }
+        };
+        for (Entity entity : entities) {
+            world.addEntity(entity);
+        }
+
+        int[] damage = new int[victims.length];
+        for (int frame = 0; frame < FRAMES + DRAIN_FRAMES; frame++) {
+            stopped = frame >= FRAMES;
+            world.update(FRAME);
+            for (ShooterBrain brain : shooterBrains) {
+                brain.checkPath(world, frame);
+            }
+            for (int i = 0; i < victims.length; i++) {
+                Stats stats = statsMapper.get(victims[i]);
+                damage[i] += stats.getMaxHealth() - stats.getHealth();
+                stats.heal(stats.getMaxHealth());
+            }
+        }
+
+        for (int i = 0; i < victims.length; i++) {
+            if (damage[i] != expectedDamage[i]) {
+                throw new RuntimeException("Actor " + victims[i] + " took " + damage[i] + " damage, " + expectedDamage[i]
+                        + " were decided");
+            }
+        }
+        for (Entity entity : entities) {
+            if (scheduler.isLocked(actorMapper.get(entity))) {
+                throw new RuntimeException("Actor " + entity + " still locked after every animation landed");
+            }
+        }
+        for (int cell = 0; cell < world.getWidth() * world.getHeight(); cell++) {
+            if (world.isReserved(cell)) {
+                throw new RuntimeException("Cell " + cell + " still reserved after every animation landed");
+            }
+        }
+        if (walkerActsDuringShots == 0 || crosserHits == 0 || crosserWaits == 0 || bumps == 0) {
+            throw new RuntimeException("Animations never overlapped: " + walkerActsDuringShots + " walker acts during shots, "
+                    + crosserHits + " crosser hits, " + crosserWaits + " crosser waits, " + bumps + " bumps");
+        }
+
+        System.out.println("Concurrent resolution");
+        System.out.printf("  %d shots, %d bumps, %d on the crosser, crosser waited %d times, walker acted %d times during shots%n",
+                shots, bumps, crosserHits, crosserWaits, walkerActsDuringShots);
+    }
+
+    /**
+     * Fires whenever it may and books the damage on whoever is in the end cell when the shot starts.
+     */
+    private static class ShooterBrain implements Actor.Brain {
+        private final Entity shooter;
+        private final Direction direction;
+        private final Entity crosser;
+        private int endCell = -1;
+
+        ShooterBrain(Entity shooter, Direction direction, Entity crosser) {
+            this.shooter = shooter;
+            this.direction = direction;
+            this.crosser = crosser;
+        }
+
+        @Override
+        public boolean act(World world) {
+            if (stopped) {
+                return true;
+            }
+            Position position = positionMapper.get(shooter);
+            int cell = world.getRayEndCell(world.getCellIndex(position.x, position.y), direction);
+            boolean victimLocked = false;
+            for (Entity e = world.getFirstEntityAt(cell); e != null; e = world.getNextEntityAt(e)) {
+                Actor actor = actorMapper.get(e);
+                victimLocked |= actor != null && world.getScheduler().isLocked(actor);
+            }
+            if (!BrainCore.fire(world, shooter, direction, ItemType.Ammo, sounds)) {
+                return false;
+            }
+            if (victimLocked) {
+                throw new RuntimeException("Shot at a locked actor in cell " + cell);
+            }
+            endCell = cell;
+            shots++;
+            for (int i = 0; i < victims.length; i++) {
+                Position victimPosition = positionMapper.get(victims[i]);
+                if (world.getCellIndex(victimPosition.x, victimPosition.y) == cell) {
+                    expectedDamage[i] += ItemType.Ammo.damage;
+                    if (victims[i] == crosser) {
+                        crosserHits++;
+                    }
+                }
+            }
+            return true;
+        }
+
+        // nothing may enter the path between the shooter and the cell the shot in flight was decided to end in
+        void checkPath(World world, int frame) {
+            if (!world.getScheduler().isLocked(actorMapper.get(shooter))) {
+                return;
+            }
+            Position position = positionMapper.get(shooter);
+            int cell = world.getNeighbor(world.getCellIndex(position.x, position.y), direction);
+            for (; cell != endCell; cell = world.getNeighbor(cell, direction)) {
+                if (!world.isWalkable(cell)) {
+                    throw new RuntimeException("Cell " + cell + " entered while a shot to " + endCell + " was in flight, frame " + frame);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import java.util.Random;
+
+import static com.dg.ssrl.Components.Position;
+
+/**
+ * Building a distance map to one goal: the relaxation sweeps World.updateDijkstraMap used to do, repeated until
+ * nothing changes, against DijkstraMap.compute. Worlds up to Bitboard.MAX_WIDTH wide compute with the bitboard, wider
+ * ones with the breadth first search. Maps are square with a third of the cells walled at random.
+ */
+public class DijkstraBenchmark {
+
+    private static final int[] SIZES = {10, 16, 32, 64, 128, 256, 512};
+    private static final int CELLS_PER_ROUND = 4000000;
+    // a relaxation pass visits every cell and it takes about as many passes as the map is wide
+    private static final int RELAXED_CELLS_PER_ROUND = 4000000;
+    // the sweeps take seconds on the largest maps
+    private static final int SLOW_SIZE = 256;
+
+    public static void main(String[] args) {
+        System.out.println("Distance map to one goal, us per map");
+        System.out.println("  size     relaxation  DijkstraMap");
+        for (int size : SIZES) {
+            final World world = makeWorld(size);
+            final DijkstraMap map = new DijkstraMap(world);
+            final int goal = findGoal(world, map);
+            final int[] relaxed = new int[size * size];
+
+            map.compute(goal);
+            relax(world, goal, relaxed);
+            for (int cell = 0; cell < relaxed.length; cell++) {
+                if (relaxed[cell] != map.get(cell)) {
+                    throw new RuntimeException("Distance mismatch at cell " + cell + " of a " + size + "x" + size + " map");
+                }
+            }
+
+            int relaxations = Math.max(1, RELAXED_CELLS_PER_ROUND / (size * size * size));
+            double relaxation = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        relax(world, goal, relaxed);
+                        sum += relaxed[i % relaxed.length];
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(relaxations, size >= SLOW_SIZE ? 1 : 5, size >= SLOW_SIZE ? 2 : 7);
+            int operations = Math.max(1, CELLS_PER_ROUND / (size * size));
+            double dijkstraMap = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        map.compute(goal);
+                        sum += map.get(i % relaxed.length);
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(operations);
+
+            System.out.printf("  %3dx%-3d %11.1f %12.1f%s%n", size, size, relaxation / 1000, dijkstraMap / 1000,
+                    world.getBitboard() != null ? " (bitboard)" : "");
+        }
+    }
+
+    private static World makeWorld(int size) {
+        World world = new World(size, size, null, new Scheduler(), 1, Color.WHITE);
+        Random random = new Random(size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (random.nextInt(3) == 0) {
+                    world.setTileType(x, y, TileType.Wall);
+                }
+            }
+        }
+        return world;
+    }
+
+    /**
+     * A floor cell near the center that reaches most of the floor, the walls can wall in small pockets.
+     */
+    private static int findGoal(World world, DijkstraMap map) {
+        int cellCount = world.getWidth() * world.getHeight();
+        int floorCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (world.isFloor(cell)) {
+                floorCount++;
+            }
+        }
+        int center = world.getCellIndex(world.getWidth() / 2, world.getHeight() / 2);
+        for (int cell = center; ; cell = (cell + 1) % cellCount) {
+            if (world.isFloor(cell)) {
+                map.compute(cell);
+                int reached = 0;
+                for (int i = 0; i < cellCount; i++) {
+                    if (map.get(i) != DijkstraMap.UNREACHABLE) {
+                        reached++;
+                    }
+                }
+                if (reached * 2 > floorCount) {
+                    return cell;
+                }
+            }
+        }
+    }
+
+    /**
+     * The sweeps World.updateDijkstraMap did before DijkstraMap, writing into a flat array instead of int[][].
+     */
+    private static void relax(World world, int goalCell, int[] distances) {
+        int width = world.getWidth();
+        int height = world.getHeight();
+        for (int cell = 0; cell < distances.length; cell++) {
+            distances[cell] = cell == goalCell ? 0 : Integer.MAX_VALUE;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (world.getTileType(x, y) == TileType.Floor) {
+                        int value = distances[y * width + x];
+                        int lowestNeighborValue = Integer.MAX_VALUE;
+                        for (Direction direction : Direction.CARDINAL_DIRECTIONS) {
+                            Position p = new Position();
+                            p.set(x, y);
+                            p = world.translateWraparound(p, direction);
+
+                            if (world.getTileType(p.x, p.y) == TileType.Floor) {
+                                int neighborValue = distances[p.y * width + p.x];
+                                if (neighborValue < lowestNeighborValue) {
+                                    lowestNeighborValue = neighborValue;
+                                }
+                            }
+                        }
+                        if (value - lowestNeighborValue >= 2) {
+                            distances[y * width + x] = lowestNeighborValue + 1;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import java.util.Random;
+
+/**
+ * Where an all-pairs DistanceTable stops paying off: its rebuild after a wall changed, against the single search
+ * DijkstraMap.compute does for the player map. Every destroyed wall costs a rebuild on the next query, so
+ * DistanceTable.MAX_CELL_COUNT is the largest size whose rebuild still leaves room in the scheduler's share of a
+ * frame, about 4 ms in Game. Maps are square with a quarter of the cells walled at random.
+ */
+public class DistanceTableBenchmark {
+
+    private static final int[] SIZES = {10, 12, 16, 20, 24, 32};
+    private static final int CELLS_PER_ROUND = 4000000;
+
+    public static void main(String[] args) {
+        System.out.println("Distance table rebuild against one player map search");
+        System.out.println("  size     rebuild ms  search us");
+        for (int size : SIZES) {
+            World world = new World(size, size, null, new Scheduler(), 1, Color.WHITE);
+            Random random = new Random(size);
+            for (int cell = 0; cell < size * size; cell++) {
+                if (random.nextInt(4) == 0) {
+                    world.setTileType(cell % size, cell / size, TileType.Wall);
+                }
+            }
+            final int cellCount = size * size;
+            final DistanceTable table = new DistanceTable(world);
+            final DijkstraMap map = new DijkstraMap(world);
+
+            double rebuild = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        table.invalidate();
+                        sum += table.getDistance(0, i % cellCount);
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(Math.max(1, CELLS_PER_ROUND / (cellCount * cellCount)));
+            double search = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        map.compute(i % cellCount);
+                        sum += map.get(0);
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(CELLS_PER_ROUND / cellCount);
+
+            System.out.printf("  %3dx%-3d %11.2f %10.1f%s%n", size, size, rebuild / 1000000, search / 1000,
+                    cellCount == DistanceTable.MAX_CELL_COUNT ? "  (MAX_CELL_COUNT)" : "");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import java.util.Random;
+
+/**
+ * World.canSee through the FieldOfView cache. Uncached queries cycle through one more origin than the cache holds,
+ * so every query runs the shadowcasting. Cached queries ask from one origin. Maps are square with a quarter of the
+ * cells walled at random.
+ */
+public class FieldOfViewBenchmark {
+
+    private static final int[] SIZES = {10, 20, 40, 64};
+    private static final int ORIGINS = 17;
+    private static final int OPERATIONS = 100000;
+
+    public static void main(String[] args) {
+        System.out.println("Line of sight query, us per query");
+        System.out.println("  size     uncached   cached");
+        for (int size : SIZES) {
+            final World world = new World(size, size, null, new Scheduler(), 1, Color.WHITE);
+            Random random = new Random(size);
+            for (int cell = 0; cell < size * size; cell++) {
+                if (random.nextInt(4) == 0) {
+                    world.setTileType(cell % size, cell / size, TileType.Wall);
+                }
+            }
+            final int cellCount = size * size;
+            final FieldOfView fieldOfView = world.getFieldOfView();
+
+            int computeCount = fieldOfView.getComputeCount();
+            double uncached = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        sum += world.canSee((i % ORIGINS) * 7 % cellCount, i * 31 % cellCount) ? 1 : 0;
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(OPERATIONS / size);
+            // 12 rounds of warm-up and timing, a few queries at the start of a round may still hit
+            if (fieldOfView.getComputeCount() - computeCount < 11 * (OPERATIONS / size)) {
+                throw new RuntimeException("Uncached queries hit the cache");
+            }
+            double cached = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        sum += world.canSee(0, i * 31 % cellCount) ? 1 : 0;
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(OPERATIONS);
+
+            System.out.printf("  %3dx%-3d %9.2f %8.2f%n", size, size, uncached / 1000, cached / 1000);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import java.util.Random;
+
+/**
+ * Keeping a distance map up to date while its goal walks one step at a time: DijkstraMap.moveGoal repairing the map
+ * in place against a full DijkstraMap.compute, with the cells the repair touched. The repair is checked against the
+ * compute on every step first. Maps are square with a third of the cells walled at random.
+ */
+public class GoalRepairBenchmark {
+
+    private static final int[] SIZES = {16, 32, 64, 128};
+    private static final int WALK_STEPS = 1000;
+    private static final int CELLS_PER_ROUND = 4000000;
+
+    public static void main(String[] args) {
+        System.out.println("Distance map after a one step goal move, us per step");
+        System.out.println("  size      moveGoal   compute  cells touched");
+        for (int size : SIZES) {
+            World world = new World(size, size, null, new Scheduler(), 1, Color.WHITE);
+            Random random = new Random(size);
+            for (int cell = 0; cell < size * size; cell++) {
+                if (random.nextInt(3) == 0) {
+                    world.setTileType(cell % size, cell / size, TileType.Wall);
+                }
+            }
+            final int[] walk = walk(world, random);
+            final DijkstraMap repaired = new DijkstraMap(world);
+            final DijkstraMap computed = new DijkstraMap(world);
+
+            repaired.compute(walk[0]);
+            long touched = 0;
+            for (int i = 1; i < walk.length; i++) {
+                repaired.moveGoal(walk[i]);
+                touched += repaired.getLastTouchedCount();
+                computed.compute(walk[i]);
+                for (int cell = 0; cell < size * size; cell++) {
+                    if (repaired.get(cell) != computed.get(cell)) {
+                        throw new RuntimeException("Distance mismatch at cell " + cell + " of a " + size + "x" + size + " map");
+                    }
+                }
+            }
+
+            int operations = Math.max(1, CELLS_PER_ROUND / (size * size));
+            double moveGoal = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        repaired.moveGoal(walk[step(i)]);
+                        sum += repaired.get(0);
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(operations);
+            double compute = new Benchmark() {
+                @Override
+                long run(int operations) {
+                    long sum = 0;
+                    for (int i = 0; i < operations; i++) {
+                        computed.compute(walk[step(i)]);
+                        sum += computed.get(0);
+                    }
+                    return sum;
+                }
+            }.nanosPerOperation(operations);
+
+            System.out.printf("  %3dx%-3d %9.1f %9.1f %7d of %d%n", size, size, moveGoal / 1000, compute / 1000,
+                    touched / (walk.length - 1), size * size);
+        }
+    }
+
+    /**
+     * Goal cells of a random walk over the floor, each one step from the one before.
+     */
+    private static int[] walk(World world, Random random) {
+        int[] walk = new int[WALK_STEPS + 1];
+        int cell = 0;
+        while (!world.isFloor(cell)) {
+            cell++;
+        }
+        walk[0] = cell;
+        for (int i = 1; i < walk.length; ) {
+            int next = world.getNeighbor(cell, Direction.CARDINAL_DIRECTIONS[random.nextInt(4)]);
+            if (world.isFloor(next)) {
+                cell = next;
+                walk[i++] = cell;
+            }
+        }
+        return walk;
+    }
+
+    // walks the path back and forth, so every step moves the goal by one cell
+    private static int step(int i) {
+        int n = i % (2 * WALK_STEPS);
+        return n <= WALK_STEPS ? n : 2 * WALK_STEPS - n;
+    }
+}
@@ -0,0 +1,127 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.dg.ssrl.Components.Position;
+
+/**
+ * Walks monsters around a walled map and checks the bitboard's floor, solid and free rows against World after every
+ * step, and the free cells its flood reaches against a search over the cells one at a time. Then times the two.
+ *
+ * Runs without a backend, so there are no textures or sounds.
+ */
+public class ReachableFreeCellCheck {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 24;
+    private static final int MONSTERS = 60;
+    private static final int STEPS = 3000;
+    private static final int FLOODS_PER_ROUND = 2000;
+
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+
+    public static void main(String[] args) {
+        EntityFactory entityFactory = new EntityFactory(new Assets());
+        final World world = new World(WIDTH, HEIGHT, entityFactory, new Scheduler(), 1, Color.WHITE);
+        final Bitboard bitboard = world.getBitboard();
+        Random random = new Random(15);
+        for (int cell = 0; cell < WIDTH * HEIGHT; cell++) {
+            if (random.nextInt(3) == 0) {
+                world.setTileType(world.getCellX(cell), world.getCellY(cell), TileType.Wall);
+            }
+        }
+        Entity[] monsters = new Entity[MONSTERS];
+        for (int i = 0; i < MONSTERS; i++) {
+            int cell = world.getRandomFreeCell(random);
+            monsters[i] = entityFactory.makeMonster(world.getCellX(cell), world.getCellY(cell), MonsterType.Brute);
+            world.addEntity(monsters[i]);
+        }
+
+        final int[] queue = new int[WIDTH * HEIGHT];
+        final boolean[] seen = new boolean[WIDTH * HEIGHT];
+        long reachedTotal = 0;
+        for (int step = 0; step < STEPS; step++) {
+            Entity monster = monsters[random.nextInt(MONSTERS)];
+            Position position = positionMapper.get(monster);
+            int target = world.getNeighbor(world.getCellIndex(position.x, position.y),
+                    Direction.CARDINAL_DIRECTIONS[random.nextInt(4)]);
+            if (world.isWalkable(target)) {
+                world.move(monster, target);
+            }
+            for (int cell = 0; cell < WIDTH * HEIGHT; cell++) {
+                int x = world.getCellX(cell);
+                int y = world.getCellY(cell);
+                boolean floor = world.getTileType(cell) == TileType.Floor;
+                if (bitboard.isFloor(x, y) != floor || bitboard.isFree(x, y) != world.isEmpty(cell)
+                        || (floor && bitboard.isSolid(x, y) == world.isWalkable(cell))) {
+                    throw new RuntimeException("Bitboard rows out of sync at cell " + cell + " after step " + step);
+                }
+            }
+            int from = world.getCellIndex(position.x, position.y);
+            int reached = bitboard.floodOpen(position.x, position.y);
+            int expected = countReachableFree(world, from, queue, seen);
+            if (reached != expected) {
+                throw new RuntimeException("Flood from cell " + from + " reached " + reached + " free cells, " + expected
+                        + " are reachable");
+            }
+            reachedTotal += reached;
+        }
+
+        final int from = world.getCellIndex(positionMapper.get(monsters[0]).x, positionMapper.get(monsters[0]).y);
+        double flood = new Benchmark() {
+            @Override
+            long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    sum += bitboard.floodOpen(from % WIDTH, from / WIDTH);
+                }
+                return sum;
+            }
+        }.nanosPerOperation(FLOODS_PER_ROUND);
+        double cellByCell = new Benchmark() {
+            @Override
+            long run(int operations) {
+                long sum = 0;
+                for (int i = 0; i < operations; i++) {
+                    sum += countReachableFree(world, from, queue, seen);
+                }
+                return sum;
+            }
+        }.nanosPerOperation(FLOODS_PER_ROUND);
+
+        System.out.println("Reachable free cells");
+        System.out.printf("  %dx%d map, %d monsters, %d free cells reached on average%n", WIDTH, HEIGHT, MONSTERS,
+                reachedTotal / STEPS);
+        System.out.printf("  bitboard flood %.1f us, cell by cell %.1f us%n", flood / 1000, cellByCell / 1000);
+    }
+
+    // breadth first over cells that are neither wall nor solid, starting from a cell that may be either
+    private static int countReachableFree(World world, int from, int[] queue, boolean[] seen) {
+        Arrays.fill(seen, false);
+        if (world.getTileType(from) != TileType.Floor) {
+            return 0;
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        seen[from] = true;
+        int free = 0;
+        while (head < tail) {
+            int cell = queue[head++];
+            if (world.isEmpty(cell)) {
+                free++;
+            }
+            for (Direction direction : Direction.CARDINAL_DIRECTIONS) {
+                int neighbor = world.getNeighbor(cell, direction);
+                if (!seen[neighbor] && world.isWalkable(neighbor)) {
+                    seen[neighbor] = true;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return free;
+    }
+}
@@ -0,0 +1,72 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.graphics.Color;
+
+import static com.dg.ssrl.Components.Actor;
+
+/**
+ * Scheduler.update in each mode with actors that always act, spread over every speed. Every update runs turns until
+ * the default time budget is spent, so the cost per act is the time of a run over the number of acts in it.
+ *
+ * First checks that an update without a time limit still returns when none of its actors can act.
+ */
+public class SchedulerBenchmark {
+
+    private static final int[] ACTOR_COUNTS = {1000, 10000, 100000};
+    private static final int WARMUP_UPDATES = 500;
+    private static final int UPDATES = 500;
+
+    private static long acts;
+
+    public static void main(String[] args) {
+        World world = new World(4, 4, null, new Scheduler(), 1, Color.WHITE);
+        Actor.Brain brain = new Actor.Brain() {
+            @Override
+            public boolean act(World world) {
+                acts++;
+                return true;
+            }
+        };
+        Actor.Speed[] speeds = Actor.Speed.values();
+        Scheduler.Mode[] modes = Scheduler.Mode.values();
+
+        for (Scheduler.Mode mode : modes) {
+            Scheduler scheduler = new Scheduler(mode);
+            scheduler.setTimeBudget(Long.MAX_VALUE);
+            for (int i = 0; i < ACTOR_COUNTS[0]; i++) {
+                Actor actor = new Actor(brain, speeds[i % speeds.length]);
+                actor.alive = false;
+                scheduler.addActor(actor);
+            }
+            scheduler.update(world);
+        }
+        System.out.println("Scheduler update with no actor able to act returned in every mode");
+
+        System.out.println("Scheduler, ns per act");
+        System.out.print("  actors ");
+        for (Scheduler.Mode mode : modes) {
+            System.out.printf(" %13s", mode);
+        }
+        System.out.println();
+        for (int actorCount : ACTOR_COUNTS) {
+            System.out.printf("  %6d ", actorCount);
+            for (Scheduler.Mode mode : modes) {
+                Scheduler scheduler = new Scheduler(mode);
+                for (int i = 0; i < actorCount; i++) {
+                    scheduler.addActor(new Actor(brain, speeds[i % speeds.length]));
+                }
+                for (int i = 0; i < WARMUP_UPDATES; i++) {
+                    scheduler.update(world);
+                }
+                acts = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < UPDATES; i++) {
+                    scheduler.update(world);
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.printf(" %13.0f", elapsed / (double) acts);
+            }
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+import static com.dg.ssrl.Components.Actor;
+
+/**
+ * Binary min heap of actors ordered by due time, then sequence. Every actor keeps its own position in the heap, so
+ * removing or re-keying an actor is O(log n) without a search.
+ */
+class ActorHeap implements ActorQueue {
+
+    private Actor[] actors = new Actor[64];
+    private int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(Actor actor) {
+        if (size == actors.length) {
+            actors = Arrays.copyOf(actors, size * 2);
+        }
+        actors[size] = actor;
+        actor.queueIndex = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    @Override
+    public Actor poll() {
+        if (size == 0) {
+            return null;
+        }
+        Actor first = actors[0];
+        removeAt(0);
+        return first;
+    }
+
+    @Override
+    public boolean contains(Actor actor) {
+        int index = actor.queueIndex;
+        return index >= 0 && index < size && actors[index] == actor;
+    }
+
+    @Override
+    public boolean remove(Actor actor) {
+        if (!contains(actor)) {
+            return false;
+        }
+        removeAt(actor.queueIndex);
+        return true;
+    }
+
+    @Override
+    public void update(Actor actor) {
+        siftUp(actor.queueIndex);
+        siftDown(actor.queueIndex);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            actors[i].queueIndex = -1;
+            actors[i] = null;
+        }
+        size = 0;
+    }
+
+    private void removeAt(int index) {
+        actors[index].queueIndex = -1;
+        size--;
+        if (index != size) {
+            Actor last = actors[size];
+            actors[index] = last;
+            last.queueIndex = index;
+            siftDown(index);
+            siftUp(last.queueIndex);
+        }
+        actors[size] = null;
+    }
+
+    private void siftUp(int index) {
+        Actor actor = actors[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!before(actor, actors[parent])) {
+                break;
+            }
+            actors[index] = actors[parent];
+            actors[index].queueIndex = index;
+            index = parent;
+        }
+        actors[index] = actor;
+        actor.queueIndex = index;
+    }
+
+    private void siftDown(int index) {
+        Actor actor = actors[index];
+        int half = size / 2;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && before(actors[right], actors[child])) {
+                child = right;
+            }
+            if (!before(actors[child], actor)) {
+                break;
+            }
+            actors[index] = actors[child];
+            actors[index].queueIndex = index;
+            index = child;
+        }
+        actors[index] = actor;
+        actor.queueIndex = index;
+    }
+
+    static boolean before(Actor a, Actor b) {
+        return a.dueTime < b.dueTime || (a.dueTime == b.dueTime && a.sequence < b.sequence);
+    }
+}
@@ -0,0 +1,25 @@
+package com.dg.ssrl;
+
+import static com.dg.ssrl.Components.Actor;
+
+/**
+ * Queue of actors ordered by due time, then sequence, as used by Scheduler.
+ */
+interface ActorQueue {
+    int size();
+
+    void add(Actor actor);
+
+    Actor poll();
+
+    boolean contains(Actor actor);
+
+    boolean remove(Actor actor);
+
+    /**
+     * Restores the order after the due time or sequence of a queued actor changed.
+     */
+    void update(Actor actor);
+
+    void clear();
+}
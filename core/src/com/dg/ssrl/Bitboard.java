@@ -0,0 +1,175 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+/**
+ * One long per map row for floor cells, cells holding a solid entity and free cells, kept in sync by World. Walls are
+ * the cells missing from the floor rows. Bit x of a row is column x, so a whole row of a search frontier is expanded
+ * with a couple of shifts. Only maps up to MAX_WIDTH columns fit.
+ */
+public class Bitboard {
+
+    public static final int MAX_WIDTH = 64;
+
+    private final int width;
+    private final int height;
+    private final long rowMask;
+
+    private final long[] floorRows;
+    private final long[] solidRows;
+    private final long[] freeRows;
+    // blocks nothing, for searches that walk through solid entities
+    private final long[] noRows;
+
+    private final long[] visited;
+    private final long[] frontier;
+    private final long[] next;
+
+    public Bitboard(int width, int height) {
+        if (width > MAX_WIDTH) {
+            throw new RuntimeException("Map too wide for a bitboard: " + width);
+        }
+        this.width = width;
+        this.height = height;
+        this.rowMask = width == 64 ? -1L : (1L << width) - 1;
+        floorRows = new long[height];
+        solidRows = new long[height];
+        freeRows = new long[height];
+        noRows = new long[height];
+        visited = new long[height];
+        frontier = new long[height];
+        next = new long[height];
+    }
+
+    public void setFloor(int x, int y, boolean floor) {
+        floorRows[y] = set(floorRows[y], x, floor);
+    }
+
+    public void setSolid(int x, int y, boolean solid) {
+        solidRows[y] = set(solidRows[y], x, solid);
+    }
+
+    public void setFree(int x, int y, boolean free) {
+        freeRows[y] = set(freeRows[y], x, free);
+    }
+
+    public boolean isFloor(int x, int y) {
+        return (floorRows[y] & (1L << x)) != 0;
+    }
+
+    public boolean isSolid(int x, int y) {
+        return (solidRows[y] & (1L << x)) != 0;
+    }
+
+    public boolean isFree(int x, int y) {
+        return (freeRows[y] & (1L << x)) != 0;
+    }
+
+    /**
+     * Floods from (x, y) over floor cells without a solid entity, the start cell itself may hold one. The reached
+     * cells stay available to getReachedFreeCell until the next search.
+     * @return number of free cells reached
+     */
+    public int floodOpen(int x, int y) {
+        Arrays.fill(visited, 0L);
+        if (!isFloor(x, y)) {
+            return 0;
+        }
+        Arrays.fill(frontier, 0L);
+        visited[y] = frontier[y] = 1L << x;
+        int added;
+        do {
+            added = expand(solidRows);
+        } while (added != 0);
+        int count = 0;
+        for (int row = 0; row < height; row++) {
+            count += Long.bitCount(visited[row] & freeRows[row]);
+        }
+        return count;
+    }
+
+    /**
+     * The index'th free cell reached by the last floodOpen, in row order, as y * width + x.
+     */
+    public int getReachedFreeCell(int index) {
+        int remaining = index;
+        for (int row = 0; row < height; row++) {
+            long bits = visited[row] & freeRows[row];
+            int count = Long.bitCount(bits);
+            if (remaining < count) {
+                for (int i = 0; i < remaining; i++) {
+                    bits &= bits - 1;
+                }
+                return row * width + Long.numberOfTrailingZeros(bits);
+            }
+            remaining -= count;
+        }
+        throw new RuntimeException("Free cell " + index + " not reached");
+    }
+
+    /**
+     * Breadth first search from (x, y) over floor cells, expanding a whole frontier row per step. Writes the distance
+     * of every reached cell into distances, indexed y * width + x, and leaves the other entries alone.
+     * @return number of reached cells
+     */
+    public int computeDistances(int x, int y, int[] distances) {
+        if (!isFloor(x, y)) {
+            return 0;
+        }
+        Arrays.fill(visited, 0L);
+        Arrays.fill(frontier, 0L);
+        visited[y] = frontier[y] = 1L << x;
+        distances[y * width + x] = 0;
+        int reached = 1;
+        for (int distance = 1; ; distance++) {
+            int added = expand(noRows);
+            if (added == 0) {
+                return reached;
+            }
+            reached += added;
+            for (int row = 0; row < height; row++) {
+                long bits = frontier[row];
+                int offset = row * width;
+                while (bits != 0) {
+                    distances[offset + Long.numberOfTrailingZeros(bits)] = distance;
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the frontier with the unvisited floor cells next to it that are not in blockedRows and marks them visited.
+     * @return number of cells in the new frontier
+     */
+    private int expand(long[] blockedRows) {
+        int added = 0;
+        for (int row = 0; row < height; row++) {
+            long above = frontier[row == 0 ? height - 1 : row - 1];
+            long below = frontier[row == height - 1 ? 0 : row + 1];
+            long current = frontier[row];
+            long reached = above | below | rotateLeft(current) | rotateRight(current);
+            next[row] = reached & floorRows[row] & ~(visited[row] | blockedRows[row]);
+        }
+        for (int row = 0; row < height; row++) {
+            frontier[row] = next[row];
+            visited[row] |= next[row];
+            added += Long.bitCount(next[row]);
+        }
+        return added;
+    }
+
+    // bit x moves to x + 1, the last column wraps to the first
+    private long rotateLeft(long row) {
+        return ((row << 1) | (row >>> (width - 1))) & rowMask;
+    }
+
+    // bit x moves to x - 1, the first column wraps to the last
+    private long rotateRight(long row) {
+        return (row >>> 1) | ((row & 1) << (width - 1));
+    }
+
+    private static long set(long row, int x, boolean value) {
+        return value ? row | (1L << x) : row & ~(1L << x);
+    }
+}
@@ -2,16 +2,40 @@ package com.dg.ssrl;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Pool;
 
+import static com.dg.ssrl.Components.Actor;
 import static com.dg.ssrl.Components.MoveAnimation;
 import static com.dg.ssrl.Components.Position;
 import static com.dg.ssrl.Components.ItemContainer;
 import static com.dg.ssrl.Components.Stats;
 import static com.dg.ssrl.Components.Trigger;
 
+/**
+ * Moves, bumps and shots shared by the player and monster brains. Instead of stopping the whole scheduler while an
+ * animation plays, only the actors whose outcome depends on it are locked until it resolves: the mover or shooter, the
+ * bumped actor and the actors in the impact cells. The cells it resolves in are reserved: a bump's target cell, a
+ * shot's path and impact cells. Busy actors yield in the scheduler, so everybody else keeps acting and the animations
+ * play side by side.
+ *
+ * The outcome is the same as if the animations had played one after another. An action that would step into a
+ * reserved cell, or act on a reserved cell or a locked actor, is not taken and the actor tries again on its next
+ * turn. A locked actor is never hit or bumped, so it can't die while it waits for a callback to unlock the others.
+ */
 public class BrainCore {
 
     private static final String tag = "BrainCore";
+    // the log messages build strings, which would be the only allocations left on a combat turn
+    private static final boolean DEBUG_LOG = false;
+
+    private static final ComponentMapper<MoveAnimation> moveAnimationMapper = ComponentMapper.getFor(MoveAnimation.class);
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+    private static final ComponentMapper<Trigger> triggerMapper = ComponentMapper.getFor(Trigger.class);
+    private static final ComponentMapper<ItemContainer> itemContainerMapper = ComponentMapper.getFor(ItemContainer.class);
+    private static final ComponentMapper<Stats> statsMapper = ComponentMapper.getFor(Stats.class);
+    private static final ComponentMapper<Actor> actorMapper = ComponentMapper.getFor(Actor.class);
 
     public static class MoveResult {
         public boolean acted = false;
@@ -22,91 +46,74 @@ public class BrainCore {
 
     private static MoveResult moveResult = new MoveResult();
 
-    public static MoveResult move(final World world, final Entity entity, final Direction moveDirection, final MonsterType monsterType, final Assets.Sounds sounds) {
-        final EntityFactory entityFactory = world.getEntityFactory();
-        final Scheduler scheduler = world.getScheduler();
-        final MoveAnimation moveAnimation = entity.getComponent(MoveAnimation.class);
-        final Position currentPosition = entity.getComponent(Position.class);
+    public static MoveResult move(World world, Entity entity, Direction moveDirection, MonsterType monsterType, Assets.Sounds sounds) {
+        Scheduler scheduler = world.getScheduler();
+        MoveAnimation moveAnimation = moveAnimationMapper.get(entity);
+        Position currentPosition = positionMapper.get(entity);
 
         moveResult.acted = false;
         moveResult.moved = false;
         moveResult.turned = false;
         moveResult.endPosition.set(currentPosition);
 
-        final Position targetPosition = currentPosition.copy();
-        world.translateWraparound(targetPosition, moveDirection);
-
-        final World.Cell targetCell = world.getCell(targetPosition);
+        int targetCell = world.getNeighbor(world.getCellIndex(currentPosition.x, currentPosition.y), moveDirection);
+        int targetX = world.getCellX(targetCell);
+        int targetY = world.getCellY(targetCell);
 
         if (moveAnimation.direction == moveDirection) {
-            // Gdx.app.log(tag, "targetPosition:" + targetPosition);
-            if (world.isWalkable(targetPosition)) {
-
-                final boolean targetContainsTrigger = world.containsEntityWithComponent(targetPosition, Trigger.class);
-                if (targetContainsTrigger) {
-                    scheduler.lock();
-                }
-
-                moveAnimation.startMove(currentPosition, Assets.TILE_SIZE, moveDirection, new Runnable() {
-                    @Override
-                    public void run() {
-                        moveAnimation.setPosition(targetPosition.x * Assets.TILE_SIZE, targetPosition.y * Assets.TILE_SIZE);
-
-                        // triggers
-                        for (int i = 0; i < targetCell.getEntityCount(); i++) {
-                            int entityId = targetCell.getEntityId(i);
-                            Trigger trigger = world.getEntity(entityId).getComponent(Trigger.class);
-                            if (trigger != null) {
-                                trigger.triggerAction.run(world, entity);
-                            }
-                        }
-                        if (targetContainsTrigger) {
-                            scheduler.unlock();
-                        }
-                    }
-                });
-
-                ItemContainer itemContainer = entity.getComponent(ItemContainer.class);
-                if (itemContainer != null) {
-                    for (int i = 0; i < targetCell.getEntityCount(); i++) {
-                        int entityId = targetCell.getEntityId(i);
-                        Entity e = world.getEntity(entityId);
-                        ItemContainer pickupItem = e.getComponent(ItemContainer.class);
+            // Gdx.app.log(tag, "targetCell:" + targetCell);
+            if (world.isReserved(targetCell)) {
+                // an animation still resolves there, wait for it
+                return moveResult;
+            }
+            if (world.isWalkable(targetCell)) {
+
+                StepCallback step = stepCallbackPool.obtain();
+                step.world = world;
+                step.entity = entity;
+                step.targetCell = targetCell;
+                // a trigger may teleport the mover, it must not act again before the trigger ran
+                step.mover = world.cellContains(targetCell, World.CELL_TRIGGER) ? lockActor(scheduler, entity) : null;
+                moveAnimation.startMove(currentPosition, Assets.TILE_SIZE, moveDirection, step);
+
+                ItemContainer itemContainer = itemContainerMapper.get(entity);
+                if (itemContainer != null && world.cellContains(targetCell, World.CELL_ITEM_CONTAINER)) {
+                    for (Entity e = world.getFirstEntityAt(targetCell); e != null; e = world.getNextEntityAt(e)) {
+                        ItemContainer pickupItem = itemContainerMapper.get(e);
                         if (pickupItem != null) {
                             pickupItem.emptyInto(itemContainer);
                             pickupItem.onEmptied(entity, world);
-                            Gdx.app.log(tag, itemContainer.toString());
+                            if (DEBUG_LOG) {
+                                Gdx.app.log(tag, itemContainer.toString());
+                            }
                             sounds.play(Assets.Sounds.SoundId.PICKUP);
                         }
                     }
                 }
 
-                world.move(entity, targetPosition.x, targetPosition.y);
+                world.move(entity, targetCell);
 
                 moveResult.acted = true;
                 moveResult.moved = true;
-                moveResult.endPosition.set(targetPosition);
-            } else {
+                moveResult.endPosition.set(targetX, targetY);
+            } else if (world.cellContains(targetCell, World.CELL_STATS)) {
                 // bump
-                for (int i = 0; i < targetCell.getEntityCount(); i++) {
-                    int entityId = targetCell.getEntityId(i);
-                    final Entity targetEntity = world.getEntity(entityId);
-                    final Stats targetStats = targetEntity.getComponent(Stats.class);
+                if (isActorLockedAt(world, targetCell)) {
+                    return moveResult;
+                }
+                for (Entity e = world.getFirstEntityAt(targetCell); e != null; e = world.getNextEntityAt(e)) {
+                    Stats targetStats = statsMapper.get(e);
                     if (targetStats != null) {
-                        scheduler.lock();
-                        moveAnimation.startBump(currentPosition, moveDirection, new Runnable() {
-                            @Override
-                            public void run() {
-                                Entity explosion = entityFactory.makeDamageEffect(targetPosition.x * Assets.TILE_SIZE + Assets.TILE_SIZE/2, targetPosition.y * Assets.TILE_SIZE + Assets.TILE_SIZE/2);
-                                world.addEntity(explosion);
-
-                                sounds.play(Assets.Sounds.SoundId.HIT);
-
-                                targetStats.damage(monsterType.bumpDamage);
-                                targetEntity.alive = targetStats.isAlive();
-                                scheduler.unlock();
-                            }
-                        });
+                        BumpCallback bump = bumpCallbackPool.obtain();
+                        bump.world = world;
+                        bump.targetEntity = e;
+                        bump.targetCell = targetCell;
+                        bump.damage = monsterType.bumpDamage;
+                        bump.sounds = sounds;
+                        bump.attacker = lockActor(scheduler, entity);
+                        bump.target = lockActor(scheduler, e);
+                        world.reserve(targetCell);
+                        moveAnimation.startBump(currentPosition, moveDirection, bump);
 
                         moveResult.acted = true;
                         moveResult.moved = false;
@@ -123,95 +130,308 @@ public class BrainCore {
         return moveResult;
     }
 
-    public static void fire(final World world, final Entity entity, final Direction direction, final ItemType itemType, final Assets.Sounds sounds) {
-        Gdx.app.log(tag, "fire " + entity + " " + direction);
-        final EntityFactory entityFactory = world.getEntityFactory();
-        final Scheduler scheduler = world.getScheduler();
+    /**
+     * @return false if the shot would pass through or land in a reserved cell or on a locked actor, nothing is fired
+     */
+    public static boolean fire(final World world, final Entity entity, final Direction direction, final ItemType itemType, final Assets.Sounds sounds) {
+        EntityFactory entityFactory = world.getEntityFactory();
+        Scheduler scheduler = world.getScheduler();
+
+        Position position = positionMapper.get(entity);
+
+        int cell = world.getCellIndex(position.x, position.y);
+        int endCell = world.getRayEndCell(cell, direction);
+        int endX = world.getCellX(endCell);
+        int endY = world.getCellY(endCell);
+        int distanceTiles = world.getRayLength(cell, direction);
+        if (distanceTiles == RayTable.OPEN) {
+            // nothing in the way, the bullet goes all the way around and hits the shooter
+            distanceTiles = direction.dx != 0 ? world.getWidth() - 1 : world.getHeight() - 1;
+        }
+
+        ShotCallback shot = shotCallbackPool.obtain();
+        IntArray cells = shot.reservedCells;
+        int pathCell = cell;
+        for (int i = 0; i < distanceTiles; i++) {
+            pathCell = world.getNeighbor(pathCell, direction);
+            cells.add(pathCell);
+        }
+        if (itemType == ItemType.Rocket) {
+            for (int y = -1; y < 2; y++) {
+                for (int x = -1; x < 2; x++) {
+                    if (world.contains(endX + x, endY + y)) {
+                        cells.add(world.getCellIndex(endX + x, endY + y));
+                    }
+                }
+            }
+        } else {
+            cells.add(endCell);
+        }
+        Array<Actor> lockedActors = shot.lockedActors;
+        addActor(lockedActors, actorMapper.get(entity));
+        for (int i = 0; i < cells.size; i++) {
+            if (world.isReserved(cells.get(i))) {
+                shotCallbackPool.free(shot);
+                return false;
+            }
+            addActorsAt(world, cells.get(i), lockedActors);
+        }
+        for (int i = 0; i < lockedActors.size; i++) {
+            if (scheduler.isLocked(lockedActors.get(i))) {
+                shotCallbackPool.free(shot);
+                return false;
+            }
+        }
 
-        Position bulletStart = entity.getComponent(Position.class).copy().translate(direction);
+        if (DEBUG_LOG) {
+            Gdx.app.log(tag, "fire " + entity + " " + direction);
+        }
+        sounds.play(itemType.soundId);
+        Entity bullet = entityFactory.makeBullet(itemType);
+        shot.set(world, bullet, itemType, endCell, sounds);
+        for (int i = 0; i < cells.size; i++) {
+            world.reserve(cells.get(i));
+        }
+        for (int i = 0; i < lockedActors.size; i++) {
+            scheduler.lock(lockedActors.get(i));
+        }
+        moveAnimationMapper.get(bullet).startMove(position.x + direction.dx, position.y + direction.dy, distanceTiles * Assets.TILE_SIZE, direction, shot);
 
-        final Position bulletEnd = bulletStart.copy();
-        boolean hitSomething = false;
-        int distanceTiles = 0;
-        while (!hitSomething) {
-            world.wraparound(bulletEnd);
+        world.addEntity(bullet);
+        return true;
+    }
 
-            if (world.isWalkable(bulletEnd)) {
-                bulletEnd.translate(direction);
-                distanceTiles++;
-            } else {
-                hitSomething = true;
+    private static final Pool<StepCallback> stepCallbackPool = new Pool<StepCallback>() {
+        @Override
+        protected StepCallback newObject() {
+            return new StepCallback();
+        }
+    };
+
+    /**
+     * Finishes a step when the move animation ends and runs the triggers in the target cell.
+     */
+    private static class StepCallback implements Runnable, Pool.Poolable {
+        private World world;
+        private Entity entity;
+        private int targetCell;
+        private Actor mover;
+
+        @Override
+        public void run() {
+            moveAnimationMapper.get(entity).setPosition(world.getCellX(targetCell) * Assets.TILE_SIZE, world.getCellY(targetCell) * Assets.TILE_SIZE);
+
+            // triggers
+            if (world.cellContains(targetCell, World.CELL_TRIGGER)) {
+                for (Entity e = world.getFirstEntityAt(targetCell); e != null; e = world.getNextEntityAt(e)) {
+                    Trigger trigger = triggerMapper.get(e);
+                    if (trigger != null) {
+                        trigger.triggerAction.run(world, entity);
+                    }
+                }
             }
+            unlockActor(world.getScheduler(), mover);
+            stepCallbackPool.free(this);
         }
 
-        sounds.play(itemType.soundId);
-        final Entity bullet = entityFactory.makeBullet(itemType);
-        scheduler.lock();
-        bullet.getComponent(MoveAnimation.class).startMove(bulletStart, distanceTiles * Assets.TILE_SIZE, direction, new Runnable() {
-            @Override
-            public void run() {
-                bullet.alive = false;
-                scheduler.unlock();
-
-                float explosionCenterX = bulletEnd.x * Assets.TILE_SIZE + Assets.TILE_SIZE / 2;
-                float explosionCenterY = bulletEnd.y * Assets.TILE_SIZE + Assets.TILE_SIZE / 2;
-
-                if (itemType == ItemType.Ammo) {
-                    Entity explosion = entityFactory.makeExplosion(explosionCenterX, explosionCenterY, Assets.bulletExplosionColor);
-                    world.addEntity(explosion);
-                } else if (itemType == ItemType.Rocket) {
-                    for (int y = -1; y < 2; y++) {
-                        for (int x = -1; x < 2; x++) {
-                            Color color = Assets.bulletExplosionColor;
-                            if(x == 0 && y == 0) {
-                                color = Assets.rocketExplosionColor;
-                            }
-                            Entity explosion = entityFactory.makeExplosion(explosionCenterX + x * Assets.TILE_SIZE, explosionCenterY + y * Assets.TILE_SIZE, color);
-                            world.addEntity(explosion);
+        @Override
+        public void reset() {
+            world = null;
+            entity = null;
+            mover = null;
+        }
+    }
+
+    private static final Pool<BumpCallback> bumpCallbackPool = new Pool<BumpCallback>() {
+        @Override
+        protected BumpCallback newObject() {
+            return new BumpCallback();
+        }
+    };
+
+    /**
+     * Lands a bump attack when the bump animation ends.
+     */
+    private static class BumpCallback implements Runnable, Pool.Poolable {
+        private World world;
+        private Entity targetEntity;
+        private int targetCell;
+        private int damage;
+        private Assets.Sounds sounds;
+        private Actor attacker;
+        private Actor target;
+
+        @Override
+        public void run() {
+            float x = world.getCellX(targetCell) * Assets.TILE_SIZE + Assets.TILE_SIZE / 2;
+            float y = world.getCellY(targetCell) * Assets.TILE_SIZE + Assets.TILE_SIZE / 2;
+            world.addEntity(world.getEntityFactory().makeDamageEffect(x, y));
+
+            sounds.play(Assets.Sounds.SoundId.HIT);
+
+            Stats targetStats = statsMapper.get(targetEntity);
+            targetStats.damage(damage);
+            targetEntity.alive = targetStats.isAlive();
+            Scheduler scheduler = world.getScheduler();
+            unlockActor(scheduler, attacker);
+            unlockActor(scheduler, target);
+            world.release(targetCell);
+            bumpCallbackPool.free(this);
+        }
+
+        @Override
+        public void reset() {
+            world = null;
+            targetEntity = null;
+            sounds = null;
+            attacker = null;
+            target = null;
+        }
+    }
+
+    private static final Pool<ShotCallback> shotCallbackPool = new Pool<ShotCallback>() {
+        @Override
+        protected ShotCallback newObject() {
+            return new ShotCallback();
+        }
+    };
+
+    /**
+     * Resolves a shot when its bullet arrives. Pooled, so firing does not allocate a closure and a lock list per shot.
+     */
+    private static class ShotCallback implements Runnable, Pool.Poolable {
+        private World world;
+        private Entity bullet;
+        private ItemType itemType;
+        private int endCell;
+        private Assets.Sounds sounds;
+        // the shooter and the actors in the impact cells, locked until the bullet arrives
+        private final Array<Actor> lockedActors = new Array<Actor>();
+        // the path and impact cells, reserved until the bullet arrives
+        private final IntArray reservedCells = new IntArray();
+
+        void set(World world, Entity bullet, ItemType itemType, int endCell, Assets.Sounds sounds) {
+            this.world = world;
+            this.bullet = bullet;
+            this.itemType = itemType;
+            this.endCell = endCell;
+            this.sounds = sounds;
+        }
+
+        @Override
+        public void run() {
+            bullet.alive = false;
+            Scheduler scheduler = world.getScheduler();
+            for (int i = 0; i < lockedActors.size; i++) {
+                scheduler.unlock(lockedActors.get(i));
+            }
+            for (int i = 0; i < reservedCells.size; i++) {
+                world.release(reservedCells.get(i));
+            }
+            EntityFactory entityFactory = world.getEntityFactory();
+            int endX = world.getCellX(endCell);
+            int endY = world.getCellY(endCell);
+
+            float explosionCenterX = endX * Assets.TILE_SIZE + Assets.TILE_SIZE / 2;
+            float explosionCenterY = endY * Assets.TILE_SIZE + Assets.TILE_SIZE / 2;
+
+            if (itemType == ItemType.Ammo) {
+                Entity explosion = entityFactory.makeExplosion(explosionCenterX, explosionCenterY, Assets.bulletExplosionColor);
+                world.addEntity(explosion);
+            } else if (itemType == ItemType.Rocket) {
+                for (int y = -1; y < 2; y++) {
+                    for (int x = -1; x < 2; x++) {
+                        Color color = Assets.bulletExplosionColor;
+                        if(x == 0 && y == 0) {
+                            color = Assets.rocketExplosionColor;
                         }
+                        Entity explosion = entityFactory.makeExplosion(explosionCenterX + x * Assets.TILE_SIZE, explosionCenterY + y * Assets.TILE_SIZE, color);
+                        world.addEntity(explosion);
                     }
                 }
+            }
+
+            sounds.play(Assets.Sounds.SoundId.HIT);
 
-                sounds.play(Assets.Sounds.SoundId.HIT);
-
-                Gdx.app.log(tag, "hit in cell " + bulletEnd);
-                if (itemType == ItemType.Ammo) {
-                    projectileDamage(world, bulletEnd, itemType.damage);
-                } else if (itemType == ItemType.Rocket) {
-                    Position p = bulletEnd.copy();
-
-                    for (int y = -1; y < 2; y++) {
-                        for (int x = -1; x < 2; x++) {
-                            p.set(bulletEnd).translate(x, y);
-                            if (world.contains(p)) {
-                                int damage = 1;
-                                if(x == 0 && y == 0) {
-                                    damage = itemType.damage;
-                                }
-                                projectileDamage(world, p, damage);
+            if (DEBUG_LOG) {
+                Gdx.app.log(tag, "hit in cell " + endX + ", " + endY);
+            }
+            if (itemType == ItemType.Ammo) {
+                projectileDamage(world, endCell, itemType.damage);
+            } else if (itemType == ItemType.Rocket) {
+                for (int y = -1; y < 2; y++) {
+                    for (int x = -1; x < 2; x++) {
+                        if (world.contains(endX + x, endY + y)) {
+                            int damage = 1;
+                            if(x == 0 && y == 0) {
+                                damage = itemType.damage;
                             }
+                            projectileDamage(world, world.getCellIndex(endX + x, endY + y), damage);
                         }
                     }
                 }
+            }
+            shotCallbackPool.free(this);
+        }
 
+        @Override
+        public void reset() {
+            world = null;
+            bullet = null;
+            itemType = null;
+            sounds = null;
+            lockedActors.clear();
+            reservedCells.clear();
+        }
+    }
+
+    private static Actor lockActor(Scheduler scheduler, Entity entity) {
+        Actor actor = actorMapper.get(entity);
+        if (actor != null) {
+            scheduler.lock(actor);
+        }
+        return actor;
+    }
+
+    private static void unlockActor(Scheduler scheduler, Actor actor) {
+        if (actor != null) {
+            scheduler.unlock(actor);
+        }
+    }
+
+    private static boolean isActorLockedAt(World world, int cell) {
+        Scheduler scheduler = world.getScheduler();
+        for (Entity e = world.getFirstEntityAt(cell); e != null; e = world.getNextEntityAt(e)) {
+            Actor actor = actorMapper.get(e);
+            if (actor != null && scheduler.isLocked(actor)) {
+                return true;
             }
-        });
+        }
+        return false;
+    }
 
-        world.addEntity(bullet);
+    private static void addActorsAt(World world, int cell, Array<Actor> actors) {
+        for (Entity e = world.getFirstEntityAt(cell); e != null; e = world.getNextEntityAt(e)) {
+            addActor(actors, actorMapper.get(e));
+        }
     }
 
-    private static void projectileDamage(World world, Position position, int damage) {
-        World.Cell cell = world.getCell(position.x, position.y);
-        if (cell.type == World.Cell.Type.Wall && damage == ItemType.Rocket.damage) {
-            world.destroyWall(position);
-        } else {
-            int entityCount = cell.getEntityCount();
-            for (int i = 0; i < entityCount; i++) {
-                int entityId = cell.getEntityId(i);
-                Entity hitEntity = world.getEntity(entityId);
-                Components.Stats hitEntityStats = hitEntity.getComponent(Components.Stats.class);
+    private static void addActor(Array<Actor> actors, Actor actor) {
+        if (actor != null && !actors.contains(actor, true)) {
+            actors.add(actor);
+        }
+    }
+
+    private static void projectileDamage(World world, int cell, int damage) {
+        if (world.getTileType(cell) == TileType.Wall && damage == ItemType.Rocket.damage) {
+            world.destroyWall(cell);
+        } else if (world.cellContains(cell, World.CELL_STATS)) {
+            for (Entity hitEntity = world.getFirstEntityAt(cell); hitEntity != null; hitEntity = world.getNextEntityAt(hitEntity)) {
+                Stats hitEntityStats = statsMapper.get(hitEntity);
                 if (hitEntityStats != null) {
-                    Gdx.app.log(tag, "hit stats " + hitEntityStats);
+                    if (DEBUG_LOG) {
+                        Gdx.app.log(tag, "hit stats " + hitEntityStats);
+                    }
                     hitEntityStats.damage(damage);
                 }
             }
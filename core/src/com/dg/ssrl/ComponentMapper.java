@@ -0,0 +1,23 @@
+package com.dg.ssrl;
+
+import static com.dg.ssrl.Entity.Component;
+
+/**
+ * Resolves the component type index once so that hot code can fetch components with a plain array load.
+ */
+public final class ComponentMapper<T extends Component> {
+
+    private final int index;
+
+    private ComponentMapper(Class<T> clazz) {
+        index = ComponentType.getIndexFor(clazz);
+    }
+
+    public static <T extends Component> ComponentMapper<T> getFor(Class<T> clazz) {
+        return new ComponentMapper<T>(clazz);
+    }
+
+    public T get(Entity entity) {
+        return (T)entity.getComponent(index);
+    }
+}
@@ -0,0 +1,200 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+import static com.dg.ssrl.Components.Effect;
+import static com.dg.ssrl.Components.MoveAnimation;
+import static com.dg.ssrl.Components.Sprite;
+
+/**
+ * Structure-of-arrays copy of what the map renderer reads from every sprite entity: animation position and facing,
+ * sprite and effect. Rows are grouped by render pass, so the renderer draws everything in a single walk over flat
+ * arrays instead of going through entities and mappers once per pass.
+ *
+ * World adds and removes rows with the entities. Sprite, effect and render pass never change once an entity is added,
+ * so refresh only copies the animation state, once at the end of every update.
+ */
+public class ComponentStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final ComponentMapper<Sprite> spriteMapper = ComponentMapper.getFor(Sprite.class);
+    private static final ComponentMapper<MoveAnimation> moveAnimationMapper = ComponentMapper.getFor(MoveAnimation.class);
+    private static final ComponentMapper<Effect> effectMapper = ComponentMapper.getFor(Effect.class);
+
+    private int size;
+    private Entity[] entities = new Entity[INITIAL_CAPACITY];
+    private Sprite[] sprites = new Sprite[INITIAL_CAPACITY];
+    private Effect[] effects = new Effect[INITIAL_CAPACITY];
+    private MoveAnimation[] moveAnimations = new MoveAnimation[INITIAL_CAPACITY];
+    // copied by refresh, direction is null for sprites without a move animation
+    private Direction[] directions = new Direction[INITIAL_CAPACITY];
+    private float[] x = new float[INITIAL_CAPACITY];
+    private float[] y = new float[INITIAL_CAPACITY];
+    private boolean[] alive = new boolean[INITIAL_CAPACITY];
+
+    // passEnds[pass] is one past the last row of the pass, a pass starts where the one before ends
+    private int[] passEnds = new int[0];
+    // entity slot to row, -1 when not stored
+    private int[] rows = newRows(64);
+
+    private static int[] newRows(int capacity) {
+        int[] rows = new int[capacity];
+        Arrays.fill(rows, -1);
+        return rows;
+    }
+
+    public void add(Entity entity) {
+        Sprite sprite = spriteMapper.get(entity);
+        if (sprite == null) {
+            return;
+        }
+        int slot = EntityHandles.slot(entity.id);
+        if (slot >= rows.length) {
+            int[] grown = newRows(Math.max(slot + 1, rows.length * 2));
+            System.arraycopy(rows, 0, grown, 0, rows.length);
+            rows = grown;
+        } else if (rows[slot] != -1) {
+            return;
+        }
+        if (size == entities.length) {
+            grow(size * 2);
+        }
+        int renderPass = sprite.renderPass;
+        if (renderPass >= passEnds.length) {
+            int passCount = passEnds.length;
+            passEnds = Arrays.copyOf(passEnds, renderPass + 1);
+            Arrays.fill(passEnds, passCount, passEnds.length, size);
+        }
+
+        // the free row at the end moves down to the pass, the first row of every later pass takes the end of its pass
+        int hole = size++;
+        for (int pass = passEnds.length - 1; pass > renderPass; pass--) {
+            int start = passEnds[pass - 1];
+            if (start != hole) {
+                moveRow(start, hole);
+            }
+            hole = start;
+            passEnds[pass]++;
+        }
+        passEnds[renderPass]++;
+
+        entities[hole] = entity;
+        sprites[hole] = sprite;
+        effects[hole] = effectMapper.get(entity);
+        moveAnimations[hole] = moveAnimationMapper.get(entity);
+        rows[slot] = hole;
+        refresh(hole);
+    }
+
+    public void remove(Entity entity) {
+        int slot = EntityHandles.slot(entity.id);
+        if (slot >= rows.length || rows[slot] == -1 || entities[rows[slot]] != entity) {
+            return;
+        }
+        int hole = rows[slot];
+        rows[slot] = -1;
+
+        // the last row of the pass fills the gap, then the last row of every later pass fills the gap before it
+        for (int pass = sprites[hole].renderPass; pass < passEnds.length; pass++) {
+            int last = --passEnds[pass];
+            if (last != hole) {
+                moveRow(last, hole);
+            }
+            hole = last;
+        }
+        size--;
+        entities[size] = null;
+        sprites[size] = null;
+        effects[size] = null;
+        moveAnimations[size] = null;
+    }
+
+    public void clear() {
+        for (int row = 0; row < size; row++) {
+            rows[EntityHandles.slot(entities[row].id)] = -1;
+        }
+        Arrays.fill(entities, 0, size, null);
+        Arrays.fill(sprites, 0, size, null);
+        Arrays.fill(effects, 0, size, null);
+        Arrays.fill(moveAnimations, 0, size, null);
+        Arrays.fill(passEnds, 0);
+        size = 0;
+    }
+
+    public void refresh() {
+        for (int row = 0; row < size; row++) {
+            refresh(row);
+        }
+    }
+
+    private void refresh(int row) {
+        MoveAnimation moveAnimation = moveAnimations[row];
+        if (moveAnimation != null) {
+            directions[row] = moveAnimation.direction;
+            x[row] = moveAnimation.bounds.x;
+            y[row] = moveAnimation.bounds.y;
+        } else {
+            directions[row] = null;
+        }
+        alive[row] = entities[row].alive;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * False for an entity that died and is not removed yet, it isn't drawn.
+     */
+    public boolean isAlive(int row) {
+        return alive[row];
+    }
+
+    public Sprite getSprite(int row) {
+        return sprites[row];
+    }
+
+    public Effect getEffect(int row) {
+        return effects[row];
+    }
+
+    public boolean isAnimated(int row) {
+        return directions[row] != null;
+    }
+
+    public Direction getDirection(int row) {
+        return directions[row];
+    }
+
+    public float getX(int row) {
+        return x[row];
+    }
+
+    public float getY(int row) {
+        return y[row];
+    }
+
+    private void moveRow(int from, int to) {
+        entities[to] = entities[from];
+        sprites[to] = sprites[from];
+        effects[to] = effects[from];
+        moveAnimations[to] = moveAnimations[from];
+        directions[to] = directions[from];
+        x[to] = x[from];
+        y[to] = y[from];
+        alive[to] = alive[from];
+        rows[EntityHandles.slot(entities[to].id)] = to;
+    }
+
+    private void grow(int capacity) {
+        entities = Arrays.copyOf(entities, capacity);
+        sprites = Arrays.copyOf(sprites, capacity);
+        effects = Arrays.copyOf(effects, capacity);
+        moveAnimations = Arrays.copyOf(moveAnimations, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        alive = Arrays.copyOf(alive, capacity);
+    }
+}
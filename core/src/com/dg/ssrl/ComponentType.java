@@ -0,0 +1,41 @@
+package com.dg.ssrl;
+
+import java.util.HashMap;
+
+import static com.dg.ssrl.Entity.Component;
+
+public final class ComponentType {
+
+    private static final HashMap<Class<? extends Component>, ComponentType> types = new HashMap<Class<? extends Component>, ComponentType>();
+    private static int nextIndex = 0;
+
+    private static final int MAX_TYPES = 64;
+
+    public final int index;
+    public final long bit;
+
+    private ComponentType(int index) {
+        this.index = index;
+        this.bit = 1L << index;
+    }
+
+    public static ComponentType getFor(Class<? extends Component> clazz) {
+        ComponentType type = types.get(clazz);
+        if (type == null) {
+            if (nextIndex == MAX_TYPES) {
+                throw new RuntimeException("Component bitmasks support at most " + MAX_TYPES + " component types");
+            }
+            type = new ComponentType(nextIndex++);
+            types.put(clazz, type);
+        }
+        return type;
+    }
+
+    public static int getIndexFor(Class<? extends Component> clazz) {
+        return getFor(clazz).index;
+    }
+
+    public static int getCount() {
+        return nextIndex;
+    }
+}
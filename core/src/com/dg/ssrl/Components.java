@@ -6,6 +6,7 @@ import com.badlogic.gdx.math.Interpolation;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -134,6 +135,7 @@ public class Components {
         private final OnDied onDied;
         private int health;
         public String healthString;
+        private static String[] healthStrings = new String[0];
 
         public Stats(MonsterType monsterType, OnDied onDied) {
             this.monsterType = monsterType;
@@ -144,7 +146,14 @@ public class Components {
             updateHealthString();
         }
         private void updateHealthString() {
-            healthString = "HEALTH " + health;
+            // shared and built once per value, a hit must not allocate
+            if (health >= healthStrings.length) {
+                healthStrings = Arrays.copyOf(healthStrings, health + 1);
+            }
+            if (healthStrings[health] == null) {
+                healthStrings[health] = "HEALTH " + health;
+            }
+            healthString = healthStrings[health];
         }
 
         public void heal(int amount) {
@@ -168,6 +177,14 @@ public class Components {
             return health > 0;
         }
 
+        public int getHealth() {
+            return health;
+        }
+
+        public int getMaxHealth() {
+            return maxHealth;
+        }
+
         @Override
         public String toString() {
             return "Stats{" +
@@ -346,8 +363,12 @@ public class Components {
         }
 
         public void startMove(Position start, float distance, Direction direction, Runnable callback) {
-            bounds.x = start.x * Assets.TILE_SIZE;
-            bounds.y = start.y * Assets.TILE_SIZE;
+            startMove(start.x, start.y, distance, direction, callback);
+        }
+
+        public void startMove(int startX, int startY, float distance, Direction direction, Runnable callback) {
+            bounds.x = startX * Assets.TILE_SIZE;
+            bounds.y = startY * Assets.TILE_SIZE;
             this.distance = distance;
             currentDistance = 0;
 
@@ -462,6 +483,18 @@ public class Components {
         private Speed speed;
         private int ticks;
         public boolean alive = true;
+        private boolean blocking;
+
+        // bookkeeping of the Scheduler this actor is queued in
+        Scheduler scheduler;
+        int queueIndex = -1;
+        long dueTime;
+        long sequence;
+        long lastActTime;
+        Actor nextQueued;
+        Actor previousQueued;
+        int locks;
+
         public Actor(Brain brain, Speed speed) {
             this.brain = brain;
             this.baseSpeed = speed;
@@ -474,11 +507,32 @@ public class Components {
         }
 
         public void setSpeed(Speed newSpeed) {
-            this.speed = newSpeed;
+            if (speed != newSpeed) {
+                this.speed = newSpeed;
+                if (scheduler != null) {
+                    scheduler.onSpeedChanged(this);
+                }
+            }
         }
 
         public void resetSpeed() {
-            this.speed = baseSpeed;
+            setSpeed(baseSpeed);
+        }
+
+        /**
+         * A busy blocking actor holds up every actor after it, any other busy actor yields to the actors after it.
+         */
+        public Actor setBlocking(boolean blocking) {
+            this.blocking = blocking;
+            return this;
+        }
+
+        public boolean isBlocking() {
+            return blocking;
+        }
+
+        int getTicksToAct() {
+            return speed.ticksToAct;
         }
 
         public void reset() {
@@ -498,7 +552,7 @@ public class Components {
             Vector2 velocity = new Vector2();
             Vector2 acceleration = new Vector2();
             public Vector2 position = new Vector2();
-            public final Color color;
+            public Color color;
 
             public Particle(float x, float y, Color color) {
                 position.set(x, y);
@@ -520,10 +574,19 @@ public class Components {
             particles = new Particle[numParticles];
 
             for (int i = 0; i < numParticles; i++) {
-                Particle p = new Particle(x, y, color);
+                particles[i] = new Particle(x, y, color);
+            }
+            restart(x, y, color);
+        }
+
+        public void restart(float x, float y, Color color) {
+            lifeTime = 0;
+            for (int i = 0; i < numParticles; i++) {
+                Particle p = particles[i];
+                p.position.set(x, y);
+                p.color = color;
                 p.acceleration.set((r.nextBoolean() ? -0.5f : 0.5f) * r.nextFloat(), (r.nextBoolean() ? -0.5f : 0.5f) * r.nextFloat());
                 p.velocity.set((r.nextBoolean() ? -0.25f : 0.25f) * r.nextFloat(),  (r.nextBoolean() ? -0.25f : 0.25f) * r.nextFloat());
-                particles[i] = p;
             }
         }
 
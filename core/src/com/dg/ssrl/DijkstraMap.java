@@ -0,0 +1,269 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+/**
+ * Distance from every floor cell of a world to a goal cell, walking in the cardinal directions with wraparound.
+ * http://www.roguebasin.com/index.php?title=The_Incredible_Power_of_Dijkstra_Maps
+ *
+ * Every step costs 1, so the map is built with a single breadth first search from the goal instead of repeated
+ * relaxation sweeps. Walls and unreachable cells keep UNREACHABLE.
+ *
+ * When the goal moves or a wall opens up the map can be repaired in place, touching only the cells whose distance
+ * actually changes. The result is the same as a full compute.
+ */
+public class DijkstraMap {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final World world;
+    private final int width;
+    private final int cellCount;
+
+    private final int[] distances;
+    private final int[] neighbors;
+    private final int[] queue;
+    private final int[] keys;
+    private final long[] seeds;
+    private final int[] invalidStamps;
+    private int invalidStamp;
+    private int goal = -1;
+    private int lastTouchedCount;
+
+    public DijkstraMap(World world) {
+        this.world = world;
+        this.width = world.getWidth();
+        int height = world.getHeight();
+        this.cellCount = width * height;
+
+        distances = new int[cellCount];
+        queue = new int[cellCount];
+        keys = new int[cellCount];
+        seeds = new long[cellCount];
+        invalidStamps = new int[cellCount];
+        Arrays.fill(distances, UNREACHABLE);
+
+        neighbors = world.getNeighbors();
+    }
+
+    /**
+     * Fills the map from a distance table row, giving the same result as compute(goalCell).
+     */
+    public void copyFrom(DistanceTable table, int goalCell) {
+        goal = goalCell;
+        lastTouchedCount = cellCount;
+        for (int cell = 0; cell < cellCount; cell++) {
+            distances[cell] = table.getDistance(goalCell, cell);
+        }
+    }
+
+    public void compute(int goalCell) {
+        goal = goalCell;
+        lastTouchedCount = cellCount;
+        Arrays.fill(distances, UNREACHABLE);
+        distances[goalCell] = 0;
+        if (!world.isFloor(goalCell)) {
+            return;
+        }
+        Bitboard bitboard = world.getBitboard();
+        if (bitboard != null) {
+            bitboard.computeDistances(goalCell % width, goalCell / width, distances);
+            return;
+        }
+
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = goalCell;
+        while (head < tail) {
+            int cell = queue[head++];
+            int next = distances[cell] + 1;
+            int n = cell * 4;
+            for (int d = 0; d < 4; d++) {
+                int neighbor = neighbors[n + d];
+                if (distances[neighbor] == UNREACHABLE && world.isFloor(neighbor)) {
+                    distances[neighbor] = next;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * Rescans the map seeded with the distances of another map multiplied by coefficient. With a negative coefficient
+     * this gives a flee map: walking downhill leads away from the source goal, but towards open areas instead of into
+     * the nearest dead end.
+     */
+    public void computeScaled(DijkstraMap source, float coefficient) {
+        goal = -1;
+        Arrays.fill(distances, UNREACHABLE);
+        int seedCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int distance = source.distances[cell];
+            if (distance != UNREACHABLE && world.isFloor(cell)) {
+                seeds[seedCount++] = pack((int)(distance * coefficient), cell);
+            }
+        }
+        propagate(seedCount);
+        lastTouchedCount = cellCount;
+    }
+
+    public void clear() {
+        goal = -1;
+        Arrays.fill(distances, UNREACHABLE);
+        lastTouchedCount = cellCount;
+    }
+
+    /**
+     * Repairs the map for a new goal cell. Cells that get closer are found by a search from the new goal, cells
+     * that only had short paths through the old goal are invalidated and refilled from their valid neighbours.
+     */
+    public void moveGoal(int goalCell) {
+        if (goal == -1 || !world.isFloor(goal) || !world.isFloor(goalCell)) {
+            compute(goalCell);
+            return;
+        }
+        lastTouchedCount = 0;
+        if (goalCell == goal) {
+            return;
+        }
+        int oldGoal = goal;
+        goal = goalCell;
+
+        distances[goalCell] = 0;
+        lastTouchedCount++;
+        seeds[0] = pack(0, goalCell);
+        propagate(1);
+
+        // invalidate, in order of increasing distance, the cells that lost every neighbour one step closer
+        invalidStamp++;
+        invalidStamps[oldGoal] = invalidStamp;
+        int invalidCount = 0;
+        queue[invalidCount++] = oldGoal;
+        for (int i = 0; i < invalidCount; i++) {
+            int cell = queue[i];
+            int next = distances[cell] + 1;
+            for (int d = 0; d < 4; d++) {
+                int neighbor = neighbors[cell * 4 + d];
+                if (neighbor != goal && invalidStamps[neighbor] != invalidStamp && distances[neighbor] == next
+                        && world.isFloor(neighbor) && !isSupported(neighbor)) {
+                    invalidStamps[neighbor] = invalidStamp;
+                    queue[invalidCount++] = neighbor;
+                }
+            }
+        }
+        for (int i = 0; i < invalidCount; i++) {
+            distances[queue[i]] = UNREACHABLE;
+        }
+        lastTouchedCount += invalidCount;
+
+        int seedCount = 0;
+        for (int i = 0; i < invalidCount; i++) {
+            int cell = queue[i];
+            int best = lowestNeighbor(cell);
+            if (best != UNREACHABLE) {
+                seeds[seedCount++] = pack(best + 1, cell);
+            }
+        }
+        propagate(seedCount);
+    }
+
+    /**
+     * Repairs the map after a wall cell turned into floor. Only distances that get shorter through the new cell
+     * change.
+     */
+    public void openCell(int cell) {
+        lastTouchedCount = 0;
+        if (goal == -1 || !world.isFloor(cell)) {
+            return;
+        }
+        int best = cell == goal ? -1 : lowestNeighbor(cell);
+        if (best != UNREACHABLE) {
+            seeds[0] = pack(best + 1, cell);
+            propagate(1);
+        }
+    }
+
+    /**
+     * Cells the last compute or repair wrote, a full compute counts every cell.
+     */
+    public int getLastTouchedCount() {
+        return lastTouchedCount;
+    }
+
+    private boolean isSupported(int cell) {
+        int previous = distances[cell] - 1;
+        for (int d = 0; d < 4; d++) {
+            int neighbor = neighbors[cell * 4 + d];
+            if (distances[neighbor] == previous && invalidStamps[neighbor] != invalidStamp && world.isFloor(neighbor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int lowestNeighbor(int cell) {
+        int lowest = UNREACHABLE;
+        for (int d = 0; d < 4; d++) {
+            int neighbor = neighbors[cell * 4 + d];
+            if (distances[neighbor] < lowest && world.isFloor(neighbor)) {
+                lowest = distances[neighbor];
+            }
+        }
+        return lowest;
+    }
+
+    private static long pack(int distance, int cell) {
+        return ((long)distance << 32) | cell;
+    }
+
+    /**
+     * Lowers distances starting from the packed (distance, cell) entries in seeds. Seeds are taken in sorted order and
+     * merged with a FIFO of relaxed cells, so cells are settled in order of distance like in a breadth first search.
+     */
+    private void propagate(int seedCount) {
+        Arrays.sort(seeds, 0, seedCount);
+        int seedIndex = 0;
+        int head = 0;
+        int tail = 0;
+        while (seedIndex < seedCount || head < tail) {
+            int cell;
+            int key;
+            if (head == tail || (seedIndex < seedCount && (int)(seeds[seedIndex] >> 32) < keys[head])) {
+                key = (int)(seeds[seedIndex] >> 32);
+                cell = (int)seeds[seedIndex++];
+                if (key < distances[cell]) {
+                    distances[cell] = key;
+                    lastTouchedCount++;
+                }
+            } else {
+                key = keys[head];
+                cell = queue[head++];
+            }
+            if (key != distances[cell]) {
+                continue;
+            }
+            int next = key + 1;
+            for (int d = 0; d < 4; d++) {
+                int neighbor = neighbors[cell * 4 + d];
+                if (distances[neighbor] > next && world.isFloor(neighbor)) {
+                    distances[neighbor] = next;
+                    lastTouchedCount++;
+                    queue[tail] = neighbor;
+                    keys[tail++] = next;
+                }
+            }
+        }
+    }
+
+    public int getGoal() {
+        return goal;
+    }
+
+    public int get(int cell) {
+        return distances[cell];
+    }
+
+    public int get(int x, int y) {
+        return distances[y * width + x];
+    }
+}
@@ -2,20 +2,23 @@ package com.dg.ssrl;
 
 public enum Direction {
 
-    NONE(0, 0),
-    NORTH(0, 1),
-    SOUTH(0, -1),
-    WEST(-1, 0),
-    EAST(1, 0);
+    NONE(0, 0, -1),
+    NORTH(0, 1, 0),
+    SOUTH(0, -1, 1),
+    WEST(-1, 0, 3),
+    EAST(1, 0, 2);
 
     public static final Direction[] CARDINAL_DIRECTIONS = {NORTH, SOUTH, EAST, WEST};
 
     public final int dx;
     public final int dy;
+    // position in CARDINAL_DIRECTIONS
+    public final int index;
 
-    Direction(int dx, int dy) {
+    Direction(int dx, int dy, int index) {
         this.dx = dx;
         this.dy = dy;
+        this.index = index;
     }
 
     Direction opposite() {
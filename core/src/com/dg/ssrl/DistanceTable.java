@@ -0,0 +1,88 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+/**
+ * Distances between every pair of cells of a world, one breadth first search per floor cell. The table is rebuilt
+ * lazily after the wall layout changed, after that any distance query is a lookup.
+ *
+ * Memory and rebuild time grow with the square of the cell count, so World only keeps a table for maps up to
+ * MAX_CELL_COUNT cells.
+ */
+public class DistanceTable {
+
+    // every destroyed wall triggers a rebuild inside the next monster turn, and a turn can't be split across frames.
+    // DistanceTableBenchmark measured 1.5-1.8 ms for a 16x16 rebuild, 3.2-3.8 ms for 20x20 and 21-24 ms for 32x32,
+    // against 3 us for the single search that replaces it. Game gives the scheduler a quarter of a 60 Hz frame,
+    // about 4 ms, so 16x16 is the largest map whose rebuild leaves room for the other turns
+    public static final int MAX_CELL_COUNT = 16 * 16;
+
+    private static final short UNREACHABLE = -1;
+
+    private final World world;
+    private final int cellCount;
+    private final int[] neighbors;
+    private final short[] distances;
+    private final int[] queue;
+    private boolean dirty = true;
+    private int rebuildCount;
+
+    public DistanceTable(World world) {
+        this.world = world;
+        this.cellCount = world.getWidth() * world.getHeight();
+        if (cellCount > Short.MAX_VALUE) {
+            throw new RuntimeException("Too many cells for a distance table: " + cellCount);
+        }
+        neighbors = world.getNeighbors();
+        distances = new short[cellCount * cellCount];
+        queue = new int[cellCount];
+    }
+
+    public void invalidate() {
+        dirty = true;
+    }
+
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+
+    /**
+     * Walking distance from one cell to another, or DijkstraMap.UNREACHABLE. Like DijkstraMap, a wall cell is at
+     * distance 0 from itself and unreachable from everywhere else.
+     */
+    public int getDistance(int from, int to) {
+        if (dirty) {
+            rebuild();
+        }
+        short distance = distances[from * cellCount + to];
+        return distance == UNREACHABLE ? DijkstraMap.UNREACHABLE : distance;
+    }
+
+    private void rebuild() {
+        dirty = false;
+        rebuildCount++;
+        Arrays.fill(distances, UNREACHABLE);
+        for (int source = 0; source < cellCount; source++) {
+            int row = source * cellCount;
+            distances[row + source] = 0;
+            if (!world.isFloor(source)) {
+                continue;
+            }
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                int cell = queue[head++];
+                short next = (short)(distances[row + cell] + 1);
+                int n = cell * 4;
+                for (int d = 0; d < 4; d++) {
+                    int neighbor = neighbors[n + d];
+                    if (distances[row + neighbor] == UNREACHABLE && world.isFloor(neighbor)) {
+                        distances[row + neighbor] = next;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+    }
+}
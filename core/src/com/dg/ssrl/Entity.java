@@ -1,31 +1,52 @@
 package com.dg.ssrl;
 
-import java.util.HashMap;
+import com.badlogic.gdx.utils.Pool;
+
+import java.util.Arrays;
 
 public class Entity {
     public interface Component {}
 
-    private HashMap<Class<? extends Component>, Component> components = new HashMap<Class<? extends Component>, Component>();
+    private Component[] components = new Component[ComponentType.getCount()];
+    private long componentBits;
 
-    public final int id;
+    public int id;
     public boolean alive = true;
 
+    Pool<Entity> pool;
+
     public Entity(int id) {
         this.id = id;
     }
 
     public <T> T getComponent(Class<T> clazz) {
-        return (T)components.get(clazz);
+        return (T)getComponent(ComponentType.getIndexFor((Class<? extends Component>) clazz));
+    }
+
+    Component getComponent(int index) {
+        if (index < components.length) {
+            return components[index];
+        }
+        return null;
     }
 
     public void addComponent(Component component) {
-        components.put(component.getClass(), component);
+        ComponentType type = ComponentType.getFor(component.getClass());
+        if (type.index >= components.length) {
+            components = Arrays.copyOf(components, Math.max(type.index + 1, ComponentType.getCount()));
+        }
+        components[type.index] = component;
+        componentBits |= type.bit;
+    }
+
+    public long getComponentBits() {
+        return componentBits;
     }
 
     @Override
     public String toString() {
         return "Entity{" +
-                "components=" + components +
+                "components=" + Arrays.toString(components) +
                 ", id=" + id +
                 '}';
     }
@@ -0,0 +1,48 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+
+/**
+ * Adds and moves requested while the world is iterating its entities. They are played back in one batch
+ * at the end of the iteration. Repeated moves of the same entity collapse into a single cell change.
+ */
+class EntityCommandBuffer {
+
+    final Array<Entity> adds = new Array<Entity>();
+
+    final Array<Entity> moves = new Array<Entity>();
+    final IntArray moveTargetsX = new IntArray();
+    final IntArray moveTargetsY = new IntArray();
+    private final IntIntMap moveIndices = new IntIntMap();
+
+    void add(Entity entity) {
+        adds.add(entity);
+    }
+
+    void move(Entity entity, int toX, int toY) {
+        int index = moveIndices.get(entity.id, -1);
+        if (index == -1) {
+            moveIndices.put(entity.id, moves.size);
+            moves.add(entity);
+            moveTargetsX.add(toX);
+            moveTargetsY.add(toY);
+        } else {
+            moveTargetsX.set(index, toX);
+            moveTargetsY.set(index, toY);
+        }
+    }
+
+    boolean isEmpty() {
+        return adds.size == 0 && moves.size == 0;
+    }
+
+    void clear() {
+        adds.clear();
+        moves.clear();
+        moveTargetsX.clear();
+        moveTargetsY.clear();
+        moveIndices.clear();
+    }
+}
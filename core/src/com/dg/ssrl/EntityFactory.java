@@ -1,9 +1,10 @@
 package com.dg.ssrl;
 
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Pool;
 
+import java.util.EnumMap;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.dg.ssrl.Components.Actor;
 import static com.dg.ssrl.Components.Actor.Brain;
@@ -24,21 +25,58 @@ import static com.dg.ssrl.MonsterBrains.*;
 
 public class EntityFactory {
 
+    private static final ComponentMapper<Effect> effectMapper = ComponentMapper.getFor(Effect.class);
+    private static final ComponentMapper<MoveAnimation> moveAnimationMapper = ComponentMapper.getFor(MoveAnimation.class);
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+    private static final ComponentMapper<Actor> actorMapper = ComponentMapper.getFor(Actor.class);
+    private static final ComponentMapper<Stats> statsMapper = ComponentMapper.getFor(Stats.class);
+    private static final ComponentMapper<ItemContainer> itemContainerMapper = ComponentMapper.getFor(ItemContainer.class);
+
     private final Assets assets;
-    private final AtomicInteger entityIdCounter;
+    private final EntityHandles entityHandles = new EntityHandles();
+
+    private final Pool<Entity> explosionPool = new Pool<Entity>() {
+        @Override
+        protected Entity newObject() {
+            return newExplosion();
+        }
+    };
+    private final EnumMap<ItemType, Pool<Entity>> bulletPools = new EnumMap<ItemType, Pool<Entity>>(ItemType.class);
 
     public EntityFactory(Assets assets) {
         this.assets = assets;
-        entityIdCounter = new AtomicInteger();
     }
 
     private Entity createEntity() {
-        return new Entity(entityIdCounter.incrementAndGet());
+        return new Entity(entityHandles.allocate());
+    }
+
+    // no id yet, obtainEntity hands one out each time the pool lends the entity
+    private Entity newPooledEntity() {
+        return new Entity(-1);
+    }
+
+    private Entity obtainEntity(Pool<Entity> pool) {
+        Entity entity = pool.obtain();
+        entity.pool = pool;
+        entity.id = entityHandles.allocate();
+        entity.alive = true;
+        return entity;
+    }
+
+    public void release(Entity entity) {
+        entityHandles.release(entity.id);
+        if (entity.pool != null) {
+            Pool<Entity> pool = entity.pool;
+            entity.pool = null;
+            pool.free(entity);
+        }
     }
 
     public Entity makePlayer(int x, int y, PlayerInputAdapter playerInputAdapter) {
         final Entity entity = createEntity();
-        final Actor actor = new Actor(new PlayerBrain(playerInputAdapter, assets.sounds), MonsterType.Player.speed);
+        // the player waits for input, nothing may act ahead of it
+        final Actor actor = new Actor(new PlayerBrain(playerInputAdapter, assets.sounds), MonsterType.Player.speed).setBlocking(true);
         final MoveAnimation moveAnimation = new MoveAnimation(50f).setPosition(x * Assets.TILE_SIZE, y * Assets.TILE_SIZE).setDirection(Direction.EAST);
         ItemContainer itemContainer = new ItemContainer();
         itemContainer.add(ItemType.Ammo, 10);
@@ -67,8 +105,24 @@ public class EntityFactory {
         return entity;
     }
 
-    public Entity makeBullet(ItemType itemType) {
-        Entity entity = createEntity();
+    public Entity makeBullet(final ItemType itemType) {
+        Pool<Entity> pool = bulletPools.get(itemType);
+        if (pool == null) {
+            pool = new Pool<Entity>() {
+                @Override
+                protected Entity newObject() {
+                    return newBullet(itemType);
+                }
+            };
+            bulletPools.put(itemType, pool);
+        }
+        Entity entity = obtainEntity(pool);
+        moveAnimationMapper.get(entity).reset();
+        return entity;
+    }
+
+    private Entity newBullet(ItemType itemType) {
+        Entity entity = newPooledEntity();
         final MoveAnimation moveAnimation = new MoveAnimation(itemType.speed);
 
         entity.addComponent(new Sprite(assets.getBulletTextureRegion(itemType), 1));
@@ -111,7 +165,7 @@ public class EntityFactory {
             @Override
             public void onDied() {
                 entity.alive = false;
-                entity.getComponent(Actor.class).alive = false;
+                actorMapper.get(entity).alive = false;
             }
         }));
         if (monsterType.canCarryItems) {
@@ -133,8 +187,14 @@ public class EntityFactory {
     }
 
     public Entity makeExplosion(float x, float y, Color color) {
-        final Entity entity = createEntity();
-        final Effect effect = new Effect(x, y, 20, EXPLOSION_DURATION, color);
+        Entity entity = obtainEntity(explosionPool);
+        effectMapper.get(entity).restart(x, y, color);
+        return entity;
+    }
+
+    private Entity newExplosion() {
+        final Entity entity = newPooledEntity();
+        final Effect effect = new Effect(0, 0, 20, EXPLOSION_DURATION, Color.WHITE);
 
         entity.addComponent(effect);
         entity.addComponent(new Sprite(assets.whitePixel, 2));
@@ -164,7 +224,7 @@ public class EntityFactory {
             itemContainer = new ItemContainer(new OnEmptied() {
                 @Override
                 public void run(Entity emptiedBy, World world) {
-                    Stats stats = emptiedBy.getComponent(Stats.class);
+                    Stats stats = statsMapper.get(emptiedBy);
                     stats.heal(1);
                     entity.alive = false;
                 }
@@ -175,7 +235,7 @@ public class EntityFactory {
                 public void run(Entity emptiedBy, World world) {
                     EntityFactory entityFactory = world.getEntityFactory();
 
-                    Actor actor = emptiedBy.getComponent(Actor.class);
+                    Actor actor = actorMapper.get(emptiedBy);
                     if (actor != null) {
                         Entity adrenaline = entityFactory.createAdrenaline(emptiedBy.id);
                         world.addEntity(adrenaline);
@@ -212,14 +272,14 @@ public class EntityFactory {
             public boolean act(World world) {
                 Entity affecting = world.getEntity(affectingEntityId);
                 if (affecting != null) {
-                    Actor affectedActor = affecting.getComponent(Actor.class);
+                    Actor affectedActor = actorMapper.get(affecting);
                     affectedActor.setSpeed(Actor.Speed.FAST);
                     ticks++;
                     if (ticks > duration) {
                         entity.alive = false;
                         affectedActor.resetSpeed();
                     } else {
-                        Position position = affecting.getComponent(Position.class);
+                        Position position = positionMapper.get(affecting);
                         EntityFactory entityFactory = world.getEntityFactory();
                         world.addEntity(entityFactory.makeExplosion(position.x * Assets.TILE_SIZE + Assets.TILE_SIZE / 2, position.y * Assets.TILE_SIZE + Assets.TILE_SIZE / 2, Assets.COLOR_YELLOW));
                     }
@@ -251,17 +311,23 @@ public class EntityFactory {
             @Override
             public void run(final World world, Entity triggeredBy) {
 
-                Position target = world.getRandomFreePosition(random);
-                if (target != null) {
+                Position oldPosition = positionMapper.get(triggeredBy);
+                // a cell connected to the teleporter, so nobody lands sealed off behind walls or a crowd
+                int targetCell = world.getRandomReachableFreeCell(world.getCellIndex(oldPosition.x, oldPosition.y), random);
+                if (targetCell == -1) {
+                    targetCell = world.getRandomFreeCell(random);
+                }
+                if (targetCell != -1) {
+                    int targetX = world.getCellX(targetCell);
+                    int targetY = world.getCellY(targetCell);
                     EntityFactory entityFactory = world.getEntityFactory();
-                    Position oldPosition = triggeredBy.getComponent(Position.class);
                     world.addEntity(entityFactory.makeExplosion(oldPosition.x * Assets.TILE_SIZE + Assets.TILE_SIZE / 2, oldPosition.y * Assets.TILE_SIZE + Assets.TILE_SIZE / 2, Color.MAGENTA));
 
-                    world.addEntity(entityFactory.makeExplosion(target.x * Assets.TILE_SIZE + Assets.TILE_SIZE / 2, target.y * Assets.TILE_SIZE + Assets.TILE_SIZE / 2, Color.MAGENTA));
+                    world.addEntity(entityFactory.makeExplosion(targetX * Assets.TILE_SIZE + Assets.TILE_SIZE / 2, targetY * Assets.TILE_SIZE + Assets.TILE_SIZE / 2, Color.MAGENTA));
 
-                    world.move(triggeredBy, target.x, target.y);
-                    MoveAnimation triggeredByMoveAnimation = triggeredBy.getComponent(MoveAnimation.class);
-                    triggeredByMoveAnimation.setPosition(target.x * Assets.TILE_SIZE, target.y * Assets.TILE_SIZE);
+                    world.move(triggeredBy, targetX, targetY);
+                    MoveAnimation triggeredByMoveAnimation = moveAnimationMapper.get(triggeredBy);
+                    triggeredByMoveAnimation.setPosition(targetX * Assets.TILE_SIZE, targetY * Assets.TILE_SIZE);
 
                     assets.sounds.play(Assets.Sounds.SoundId.TELEPORT);
                 }
@@ -292,7 +358,7 @@ public class EntityFactory {
                 if (player != null) {
                     if (player.id == triggeredBy.id) {
 
-                        ItemContainer itemContainer = player.getComponent(ItemContainer.class);
+                        ItemContainer itemContainer = itemContainerMapper.get(player);
                         int keyCount = itemContainer.getAmount(ItemType.Key);
                         if (keyCount > 0) {
                             itemContainer.remove(ItemType.Key, 1);
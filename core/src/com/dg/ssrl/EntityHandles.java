@@ -0,0 +1,89 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+/**
+ * Hands out entity ids made of a slot index and a generation. Released slots are reused with a bumped generation,
+ * so ids stay dense while a stale id held by a brain or a callback can still be told apart from the new owner.
+ * Released slots wait in a FIFO queue that is only drawn from once it holds MIN_FREE_SLOTS, so a slot comes back at
+ * most once per MIN_FREE_SLOTS releases and its generation takes millions of releases, not a few thousand, to wrap.
+ */
+public class EntityHandles {
+
+    public static final int SLOT_BITS = 20;
+    public static final int MAX_SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = MAX_SLOTS - 1;
+    // 11 generation bits keep every id positive, -1 stays free for "no entity"
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+    public static final int MIN_FREE_SLOTS = 1024;
+
+    private int[] generations = new int[64];
+    private int slotCount;
+
+    // ring buffer of released slots, oldest at freeHead
+    private int[] freeSlots = new int[MIN_FREE_SLOTS * 2];
+    private int freeHead;
+    private int freeCount;
+
+    public static int slot(int id) {
+        return id & SLOT_MASK;
+    }
+
+    public static int generation(int id) {
+        return id >>> SLOT_BITS;
+    }
+
+    public int allocate() {
+        int slot;
+        if (freeCount > MIN_FREE_SLOTS) {
+            slot = freeSlots[freeHead];
+            freeHead = (freeHead + 1) % freeSlots.length;
+            freeCount--;
+        } else {
+            if (slotCount == MAX_SLOTS) {
+                throw new RuntimeException("Out of entity slots");
+            }
+            slot = slotCount++;
+            if (slot == generations.length) {
+                generations = Arrays.copyOf(generations, Math.min(generations.length * 2, MAX_SLOTS));
+            }
+            generations[slot] = 1;
+        }
+        return (generations[slot] << SLOT_BITS) | slot;
+    }
+
+    public void release(int id) {
+        if (!isValid(id)) {
+            return;
+        }
+        int slot = slot(id);
+        int generation = (generations[slot] + 1) & GENERATION_MASK;
+        generations[slot] = generation == 0 ? 1 : generation;
+        if (freeCount == freeSlots.length) {
+            growFreeSlots();
+        }
+        freeSlots[(freeHead + freeCount) % freeSlots.length] = slot;
+        freeCount++;
+    }
+
+    private void growFreeSlots() {
+        int[] grown = new int[freeSlots.length * 2];
+        for (int i = 0; i < freeCount; i++) {
+            grown[i] = freeSlots[(freeHead + i) % freeSlots.length];
+        }
+        freeSlots = grown;
+        freeHead = 0;
+    }
+
+    public boolean isValid(int id) {
+        if (id < 0) {
+            return false;
+        }
+        int slot = slot(id);
+        return slot < slotCount && generations[slot] == generation(id);
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+}
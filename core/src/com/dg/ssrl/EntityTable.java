@@ -0,0 +1,82 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+/**
+ * Entities of a world, looked up by the slot part of their id and kept densely packed for iteration.
+ */
+public class EntityTable {
+
+    private Entity[] bySlot = new Entity[64];
+    private int[] denseIndices = new int[64];
+    private Entity[] dense = new Entity[64];
+    private int size;
+
+    public void put(Entity entity) {
+        int slot = EntityHandles.slot(entity.id);
+        if (slot >= bySlot.length) {
+            int capacity = Math.max(slot + 1, bySlot.length * 2);
+            bySlot = Arrays.copyOf(bySlot, capacity);
+            denseIndices = Arrays.copyOf(denseIndices, capacity);
+        }
+        Entity current = bySlot[slot];
+        if (current != null) {
+            if (current == entity) {
+                return;
+            }
+            remove(current);
+        }
+        if (size == dense.length) {
+            dense = Arrays.copyOf(dense, size * 2);
+        }
+        bySlot[slot] = entity;
+        denseIndices[slot] = size;
+        dense[size++] = entity;
+    }
+
+    public Entity get(int id) {
+        int slot = EntityHandles.slot(id);
+        if (id < 0 || slot >= bySlot.length) {
+            return null;
+        }
+        Entity entity = bySlot[slot];
+        if (entity != null && entity.id == id) {
+            return entity;
+        }
+        return null;
+    }
+
+    Entity getBySlot(int slot) {
+        return bySlot[slot];
+    }
+
+    public void remove(Entity entity) {
+        int slot = EntityHandles.slot(entity.id);
+        if (slot >= bySlot.length || bySlot[slot] != entity) {
+            return;
+        }
+        int index = denseIndices[slot];
+        int last = --size;
+        if (index != last) {
+            Entity moved = dense[last];
+            dense[index] = moved;
+            denseIndices[EntityHandles.slot(moved.id)] = index;
+        }
+        dense[last] = null;
+        bySlot[slot] = null;
+    }
+
+    public void clear() {
+        Arrays.fill(bySlot, null);
+        Arrays.fill(dense, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Entity getAt(int index) {
+        return dense[index];
+    }
+}
@@ -0,0 +1,90 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+import static com.dg.ssrl.Entity.Component;
+
+/**
+ * Live set of the entities that have all of a given group of components. The world keeps it up to date as entities
+ * are added and removed, so systems iterate it directly instead of filtering every entity each frame.
+ */
+public class Family {
+
+    private final long mask;
+
+    private Entity[] entities = new Entity[16];
+    private int size;
+    private int[] indices = newIndices(64);
+
+    private Family(long mask) {
+        this.mask = mask;
+    }
+
+    // Class<?> keeps the varargs array reifiable, so callers get no unchecked generic array warning
+    public static Family all(Class<?>... componentClasses) {
+        long mask = 0;
+        for (Class<?> componentClass : componentClasses) {
+            mask |= ComponentType.getFor(componentClass.asSubclass(Component.class)).bit;
+        }
+        return new Family(mask);
+    }
+
+    public boolean matches(Entity entity) {
+        return (entity.getComponentBits() & mask) == mask;
+    }
+
+    private static int[] newIndices(int capacity) {
+        int[] indices = new int[capacity];
+        Arrays.fill(indices, -1);
+        return indices;
+    }
+
+    void add(Entity entity) {
+        if (!matches(entity)) {
+            return;
+        }
+        int slot = EntityHandles.slot(entity.id);
+        if (slot >= indices.length) {
+            int[] grown = newIndices(Math.max(slot + 1, indices.length * 2));
+            System.arraycopy(indices, 0, grown, 0, indices.length);
+            indices = grown;
+        } else if (indices[slot] != -1) {
+            return;
+        }
+        if (size == entities.length) {
+            entities = Arrays.copyOf(entities, size * 2);
+        }
+        indices[slot] = size;
+        entities[size++] = entity;
+    }
+
+    void remove(Entity entity) {
+        int slot = EntityHandles.slot(entity.id);
+        if (slot >= indices.length || indices[slot] == -1 || entities[indices[slot]] != entity) {
+            return;
+        }
+        int index = indices[slot];
+        indices[slot] = -1;
+        int last = --size;
+        if (index != last) {
+            Entity moved = entities[last];
+            entities[index] = moved;
+            indices[EntityHandles.slot(moved.id)] = index;
+        }
+        entities[last] = null;
+    }
+
+    void clear() {
+        Arrays.fill(entities, 0, size, null);
+        Arrays.fill(indices, -1);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Entity get(int index) {
+        return entities[index];
+    }
+}
@@ -0,0 +1,133 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+/**
+ * Recursive shadowcasting field of view on the wrapping map, walls block sight and entities do not.
+ * http://www.roguebasin.com/index.php?title=FOV_using_recursive_shadowcasting
+ *
+ * Results are cached per origin cell and tile version of the world in a small ring of preallocated bit sets, so
+ * repeated questions from brains and the renderer within a turn are lookups and nothing is allocated after
+ * construction.
+ */
+public class FieldOfView {
+
+    private static final int CACHE_SIZE = 16;
+
+    // multipliers transforming octant coordinates into map offsets
+    private static final int[][] OCTANTS = {
+            {1, 0, 0, -1, -1, 0, 0, 1},
+            {0, 1, -1, 0, 0, -1, 1, 0},
+            {0, 1, 1, 0, 0, -1, -1, 0},
+            {1, 0, 0, 1, -1, 0, 0, -1}
+    };
+
+    private final World world;
+    private final int width;
+    private final int height;
+    private final int radius;
+
+    private final int[] origins = new int[CACHE_SIZE];
+    private final int[] versions = new int[CACHE_SIZE];
+    private final long[][] visible;
+    private int nextEntry;
+
+    private long[] current;
+    private int computeCount;
+
+    public FieldOfView(World world) {
+        this.world = world;
+        this.width = world.getWidth();
+        this.height = world.getHeight();
+        // rows up to half the map in each direction reach every cell, any further would look around the map again
+        this.radius = Math.max(width, height) / 2;
+        int words = (width * height + 63) / 64;
+        visible = new long[CACHE_SIZE][words];
+        Arrays.fill(origins, -1);
+    }
+
+    public boolean canSee(int fromCell, int toCell) {
+        long[] bits = getVisible(fromCell);
+        return (bits[toCell >> 6] & (1L << toCell)) != 0;
+    }
+
+    /**
+     * Number of fields of view computed so far, the rest of the queries were answered from the cache.
+     */
+    public int getComputeCount() {
+        return computeCount;
+    }
+
+    private long[] getVisible(int origin) {
+        int version = world.getTileVersion();
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            if (origins[i] == origin && versions[i] == version) {
+                return visible[i];
+            }
+        }
+        int entry = nextEntry;
+        nextEntry = (nextEntry + 1) % CACHE_SIZE;
+        origins[entry] = origin;
+        versions[entry] = version;
+        current = visible[entry];
+        compute(origin);
+        return current;
+    }
+
+    private void compute(int origin) {
+        computeCount++;
+        Arrays.fill(current, 0L);
+        int originX = world.getCellX(origin);
+        int originY = world.getCellY(origin);
+        markVisible(originX, originY);
+        for (int octant = 0; octant < 8; octant++) {
+            castLight(originX, originY, 1, 1.0f, 0.0f,
+                    OCTANTS[0][octant], OCTANTS[1][octant], OCTANTS[2][octant], OCTANTS[3][octant]);
+        }
+    }
+
+    private void castLight(int originX, int originY, int row, float start, float end, int xx, int xy, int yx, int yy) {
+        if (start < end) {
+            return;
+        }
+        float newStart = 0.0f;
+        boolean blocked = false;
+        for (int distance = row; distance <= radius && !blocked; distance++) {
+            int dy = -distance;
+            for (int dx = -distance; dx <= 0; dx++) {
+                float leftSlope = (dx - 0.5f) / (dy + 0.5f);
+                float rightSlope = (dx + 0.5f) / (dy - 0.5f);
+                if (start < rightSlope) {
+                    continue;
+                } else if (end > leftSlope) {
+                    break;
+                }
+
+                int x = originX + dx * xx + dy * xy;
+                int y = originY + dx * yx + dy * yy;
+                x = ((x % width) + width) % width;
+                y = ((y % height) + height) % height;
+                markVisible(x, y);
+
+                boolean opaque = !world.isFloor(y * width + x);
+                if (blocked) {
+                    if (opaque) {
+                        newStart = rightSlope;
+                    } else {
+                        blocked = false;
+                        start = newStart;
+                    }
+                } else if (opaque && distance < radius) {
+                    blocked = true;
+                    castLight(originX, originY, distance + 1, start, leftSlope, xx, xy, yx, yy);
+                    newStart = rightSlope;
+                }
+            }
+        }
+    }
+
+    private void markVisible(int x, int y) {
+        int cell = y * width + x;
+        current[cell >> 6] |= 1L << cell;
+    }
+}
@@ -19,6 +19,10 @@ import static com.dg.ssrl.Components.Stats;
 
 public class Game extends ApplicationAdapter {
 
+	private static final ComponentMapper<Stats> statsMapper = ComponentMapper.getFor(Stats.class);
+	private static final ComponentMapper<ItemContainer> itemContainerMapper = ComponentMapper.getFor(ItemContainer.class);
+	private static final ComponentMapper<Sprite> spriteMapper = ComponentMapper.getFor(Sprite.class);
+
 	private class DebugInputSwitcher extends InputAdapter {
 		private int index = 0;
 		private final Position[] debugScreenSizes;
@@ -46,11 +50,20 @@ public class Game extends ApplicationAdapter {
 	private class TimeStep {
 		private static final int MAX_UPDATE_ITERATIONS = 5;
 		private static final float FIXED_TIME_STEP = 1f / 60f;
+		// share of a frame the scheduler may spend on actor turns, the rest is left for rendering
+		private static final float SCHEDULER_FRAME_SHARE = 0.25f;
 		private float accumulator = 0;
 
 		public void update() {
 			// step
-			accumulator += Gdx.graphics.getRawDeltaTime();
+			float delta = Gdx.graphics.getRawDeltaTime();
+			accumulator += delta;
+			int steps = Math.min((int) (accumulator / FIXED_TIME_STEP), MAX_UPDATE_ITERATIONS);
+			if (steps > 0) {
+				// devices that can't keep up get no more than a share of the fixed step, or the budget feeds the lag
+				float frameTime = Math.min(delta, FIXED_TIME_STEP);
+				scheduler.setTimeBudget((long) (frameTime * SCHEDULER_FRAME_SHARE * 1e9f / steps));
+			}
 			int iterations = 0;
 			while (accumulator > FIXED_TIME_STEP && iterations < MAX_UPDATE_ITERATIONS) {
 				step(FIXED_TIME_STEP);
@@ -144,24 +157,34 @@ public class Game extends ApplicationAdapter {
 
 	private void initWorld(boolean reset) {
         playerInputAdapter.clear();
-		scheduler.clear();
 
 		int sector = 0;
 		Entity oldPlayer = null;
 		if (world != null) {
+			GoalMaps goalMaps = world.getGoalMaps();
+			Gdx.app.log(tag, "sector " + world.getSector() + " player map: " + goalMaps.getPlayerInvalidationCount() + " invalidations, "
+					+ goalMaps.getPlayerRebuildCount() + " rebuilds, " + goalMaps.getAvoidedRecomputes() + " recomputes avoided, "
+					+ goalMaps.getPlayerCellsTouched() + " cells touched");
+			Gdx.app.log(tag, "sector " + world.getSector() + " scheduler: " + scheduler.getOverrunCount() + " updates over budget, last by "
+					+ scheduler.getLastOverrunNanos() / 1000 + " us");
 			oldPlayer = world.getPlayer();
 			if (!reset) {
 				sector = world.getSector();
 			}
 		}
 		sector += 1;
+		scheduler.clear();
+
+		if (world != null) {
+			world.releaseEntitiesExcept(reset ? null : oldPlayer);
+		}
 
 		Generator.LevelData levelData = Generator.generate(System.currentTimeMillis(), WORLD_WIDTH, WORLD_HEIGHT, sector, entityFactory);
 
 		world = new World(WORLD_WIDTH, WORLD_HEIGHT, entityFactory, scheduler, sector, levelData.wallColor);
 		for (int y = 0; y < WORLD_HEIGHT; y++) {
 			for (int x = 0; x < WORLD_WIDTH; x++) {
-				world.getCell(x, y).type = levelData.tiles[y][x];
+				world.setTileType(x, y, levelData.tiles[y][x]);
 			}
 		}
 
@@ -328,8 +351,8 @@ public class Game extends ApplicationAdapter {
 			float thirdRowY = firstRowY - 2 * assets.font.getCapHeight();
 			float fourthRowY = firstRowY - 3 * assets.font.getCapHeight();
 
-			Stats stats = player.getComponent(Stats.class);
-			ItemContainer itemContainer = player.getComponent(ItemContainer.class);
+			Stats stats = statsMapper.get(player);
+			ItemContainer itemContainer = itemContainerMapper.get(player);
 			String sectorString = "AREA " + world.getSector();
 
 			assets.font.setColor(Color.ORANGE);
@@ -398,9 +421,9 @@ public class Game extends ApplicationAdapter {
 					highScore = loadScore();
                 } else {
 
-					ItemContainer itemContainer = world.getPlayer().getComponent(ItemContainer.class);
+					ItemContainer itemContainer = itemContainerMapper.get(world.getPlayer());
 					boolean hasKey = itemContainer.getAmount(ItemType.Key) > 0;
-					world.getExit().getComponent(Sprite.class).enableAnimation(hasKey);
+					spriteMapper.get(world.getExit()).enableAnimation(hasKey);
 
 					if (world.canSpawnRobot) {
 						if (itemContainer.getAmount(ItemType.Waste) == world.getWasteTarget()) {
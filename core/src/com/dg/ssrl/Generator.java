@@ -1,9 +1,9 @@
 package com.dg.ssrl;
 
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.IntArray;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -14,7 +14,7 @@ public class Generator {
     public static class LevelData {
         public int width;
         public int height;
-        public World.Cell.Type[][] tiles;
+        public TileType[][] tiles;
         public Position start = new Position(0,0);
         public Position exit = new Position(0,0);
         public List<Entity> entities = new ArrayList<Entity>();
@@ -117,60 +117,66 @@ public class Generator {
 
         levelData.width = width;
         levelData.height = height;
-        levelData.tiles = new World.Cell.Type[height][width];
+        levelData.tiles = new TileType[height][width];
 
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 char c  = templateData.template[height - y - 1].charAt(x);
                 if (TemplateData.isFloor(c)) {
-                    levelData.tiles[y][x] = World.Cell.Type.Floor;
+                    levelData.tiles[y][x] = TileType.Floor;
                 } else {
-                    levelData.tiles[y][x] = World.Cell.Type.Wall;
+                    levelData.tiles[y][x] = TileType.Wall;
                 }
             }
         }
 
-        // optional extra walls
-        ArrayList<Position> optionalWalls = new ArrayList<Position>();
+        // optional extra walls, cells are y * width + x
+        IntArray optionalWalls = new IntArray();
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 char c  = templateData.template[height - y - 1].charAt(x);
                 if (TemplateData.isOptionalWall(c)) {
-                    optionalWalls.add(new Position(x, y));
+                    optionalWalls.add(y * width + x);
                 }
             }
         }
-        Collections.shuffle(optionalWalls, random);
-        int numExtraFloors = optionalWalls.size()/3;
+        shuffle(optionalWalls, random);
+        int numExtraFloors = optionalWalls.size/3;
         for (int i = 0; i < numExtraFloors; i++) {
-            Position p = optionalWalls.remove(0);
-            levelData.tiles[p.y][p.x] = World.Cell.Type.Wall;
+            int cell = optionalWalls.get(i);
+            levelData.tiles[cell / width][cell % width] = TileType.Wall;
         }
 
-        ArrayList<Position> floors = new ArrayList<Position>();
+        IntArray floors = new IntArray();
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                if (levelData.tiles[y][x] == World.Cell.Type.Floor) {
-                    floors.add(new Position(x, y));
+                if (levelData.tiles[y][x] == TileType.Floor) {
+                    floors.add(y * width + x);
                 }
             }
         }
-        Collections.shuffle(floors, random);
+        shuffle(floors, random);
 
-        levelData.start = floors.remove(0);
+        int start = floors.removeIndex(0);
+        levelData.start = new Position(start % width, start / width);
         // remove immediate neighbors from list of floors
         for (Direction direction : Direction.CARDINAL_DIRECTIONS) {
-            floors.remove(levelData.start.copy().translate(direction));
+            int x = levelData.start.x + direction.dx;
+            int y = levelData.start.y + direction.dy;
+            if (x >= 0 && x < width && y >= 0 && y < height) {
+                floors.removeValue(y * width + x);
+            }
         }
 
-        levelData.exit = floors.remove(0);
+        int exit = floors.removeIndex(0);
+        levelData.exit = new Position(exit % width, exit / width);
 
-        Position keyPosition = floors.remove(0);
-        levelData.entities.add(entityFactory.makeItem(keyPosition.x, keyPosition.y, ItemType.Key));
+        int key = floors.removeIndex(0);
+        levelData.entities.add(entityFactory.makeItem(key % width, key / width, ItemType.Key));
 
         if (random.nextBoolean()) {
-            Position teleporterPosition = floors.remove(0);
-            levelData.entities.add(entityFactory.makeTeleporter(teleporterPosition.x, teleporterPosition.y));
+            int teleporter = floors.removeIndex(0);
+            levelData.entities.add(entityFactory.makeTeleporter(teleporter % width, teleporter / width));
         }
 
         // monsters
@@ -178,14 +184,14 @@ public class Generator {
 
         float stationaryChance = 0.25f;
         for (int i = 0; i < monsterCount; i++) {
-            if (floors.size() > 0) {
-                Position monsterPosition = floors.remove(0);
+            if (floors.size > 0) {
+                int monsterCell = floors.removeIndex(0);
                 MonsterType monsterType = MonsterType.ENEMIES[random.nextInt(MonsterType.ENEMIES.length)];
                 float spawnStationary = random.nextFloat();
                 if (spawnStationary < stationaryChance) {
                     monsterType = MonsterType.STATIONARY_ENEMIES[random.nextInt(MonsterType.STATIONARY_ENEMIES.length)];
                 }
-                Entity monster = entityFactory.makeMonster(monsterPosition.x, monsterPosition.y, monsterType);
+                Entity monster = entityFactory.makeMonster(monsterCell % width, monsterCell / width, monsterType);
                 levelData.entities.add(monster);
             }
         }
@@ -193,9 +199,9 @@ public class Generator {
         // items
         int wasteCount = 2 + random.nextInt(2);
         for (int i = 0; i < wasteCount; i++) {
-            if (floors.size() > 0) {
-                Position itemPosition = floors.remove(0);
-                Entity item = entityFactory.makeItem(itemPosition.x, itemPosition.y, ItemType.Waste);
+            if (floors.size > 0) {
+                int itemCell = floors.removeIndex(0);
+                Entity item = entityFactory.makeItem(itemCell % width, itemCell / width, ItemType.Waste);
                 levelData.entities.add(item);
                 levelData.wasteCount++;
             }
@@ -203,24 +209,31 @@ public class Generator {
 
         int pickupCount = 2 + random.nextInt(2);
         for (int i = 0; i < pickupCount; i++) {
-            if (floors.size() > 0) {
-                Position itemPosition = floors.remove(0);
+            if (floors.size > 0) {
+                int itemCell = floors.removeIndex(0);
                 ItemType itemType = ItemType.PICK_UPS[random.nextInt(ItemType.PICK_UPS.length)];
-                Entity item = entityFactory.makeItem(itemPosition.x, itemPosition.y, itemType);
+                Entity item = entityFactory.makeItem(itemCell % width, itemCell / width, itemType);
                 levelData.entities.add(item);
             }
         }
 
         int rarePickupCount = random.nextInt(2) + (depth / 3);
         for (int i = 0; i < rarePickupCount; i++) {
-            if (floors.size() > 0) {
-                Position itemPosition = floors.remove(0);
+            if (floors.size > 0) {
+                int itemCell = floors.removeIndex(0);
                 ItemType itemType = ItemType.RARE_PICK_UPS[random.nextInt(ItemType.RARE_PICK_UPS.length)];
-                Entity item = entityFactory.makeItem(itemPosition.x, itemPosition.y, itemType);
+                Entity item = entityFactory.makeItem(itemCell % width, itemCell / width, itemType);
                 levelData.entities.add(item);
             }
         }
 
         return levelData;
     }
+
+    // same swaps as Collections.shuffle, so a seed still generates the same level
+    private static void shuffle(IntArray cells, Random random) {
+        for (int i = cells.size; i > 1; i--) {
+            cells.swap(i - 1, random.nextInt(i));
+        }
+    }
 }
@@ -0,0 +1,180 @@
+package com.dg.ssrl;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import static com.dg.ssrl.Components.Position;
+
+/**
+ * Named distance maps shared by every brain in a world. A map is only computed when it is read after something it
+ * depends on changed, so any number of monsters following the same goal cost a single computation.
+ *
+ * Player moves and opened walls are queued and applied on the next read of the player map, so turns where nothing
+ * reads it cost nothing. Opened walls are repaired in place. A move is a distance table row where the world keeps a
+ * table, elsewhere it is repaired in place with DijkstraMap.moveGoal until a repair touches more than a quarter of the
+ * cells. A repair costs two to six times what a compute does per cell, see GoalRepairBenchmark, and on an open
+ * wrapping map a goal step shifts almost every distance, so from then on moves are full computes.
+ */
+public class GoalMaps {
+
+    // no brain walks to the exit or to items, stalkers follow Player and key carriers Flee, so there are no Exit or
+    // Items maps: a map nobody reads would still need invalidating on every item and exit change. A new goal is a
+    // constant here and a case in compute
+    public enum Goal {
+        Player, Flee
+    }
+
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+
+    // http://www.roguebasin.com/index.php?title=The_Incredible_Power_of_Dijkstra_Maps
+    private static final float FLEE_COEFFICIENT = -1.2f;
+
+    private static final Goal[] GOALS = Goal.values();
+    private static final int MAX_PENDING_OPEN_CELLS = 16;
+
+    private final World world;
+    private final DijkstraMap[] maps = new DijkstraMap[GOALS.length];
+    private final boolean[] dirty = new boolean[GOALS.length];
+
+    private boolean playerRepairPending;
+    private int pendingPlayerCell = -1;
+    private final IntArray pendingOpenCells = new IntArray();
+
+    private int playerInvalidationCount;
+    private int playerRebuildCount;
+    private long playerCellsTouched;
+    private boolean moveRepairPays = true;
+
+    public GoalMaps(World world) {
+        this.world = world;
+        for (int i = 0; i < GOALS.length; i++) {
+            maps[i] = new DijkstraMap(world);
+            dirty[i] = true;
+        }
+    }
+
+    public DijkstraMap get(Goal goal) {
+        int index = goal.ordinal();
+        if (dirty[index]) {
+            dirty[index] = false;
+            if (goal == Goal.Player) {
+                clearPlayerRepairs();
+                playerRebuildCount++;
+            }
+            compute(goal, maps[index]);
+            if (goal == Goal.Player) {
+                playerCellsTouched += maps[index].getLastTouchedCount();
+            }
+        } else if (goal == Goal.Player && playerRepairPending) {
+            applyPlayerRepairs(maps[index]);
+            playerRebuildCount++;
+        }
+        return maps[index];
+    }
+
+    public void playerMoved(int cell) {
+        playerInvalidationCount++;
+        if (!dirty[Goal.Player.ordinal()]) {
+            pendingPlayerCell = cell;
+            playerRepairPending = true;
+        }
+        dirty[Goal.Flee.ordinal()] = true;
+    }
+
+    public void cellOpened(int cell) {
+        playerInvalidationCount++;
+        if (!dirty[Goal.Player.ordinal()]) {
+            if (pendingOpenCells.size < MAX_PENDING_OPEN_CELLS) {
+                pendingOpenCells.add(cell);
+                playerRepairPending = true;
+            } else {
+                dirty[Goal.Player.ordinal()] = true;
+            }
+        }
+        dirty[Goal.Flee.ordinal()] = true;
+    }
+
+    public int getPlayerInvalidationCount() {
+        return playerInvalidationCount;
+    }
+
+    public int getPlayerRebuildCount() {
+        return playerRebuildCount;
+    }
+
+    /**
+     * Cells written by player map computes and repairs, a full compute counts every cell of the world.
+     */
+    public long getPlayerCellsTouched() {
+        return playerCellsTouched;
+    }
+
+    /**
+     * Number of player moves and map changes that did not lead to their own rebuild of the player map.
+     */
+    public int getAvoidedRecomputes() {
+        return playerInvalidationCount - playerRebuildCount;
+    }
+
+    private void applyPlayerRepairs(DijkstraMap map) {
+        if (pendingPlayerCell != -1 && (world.getDistanceTable() != null || !moveRepairPays)) {
+            computeTowards(world.getPlayer(), map);
+            playerCellsTouched += map.getLastTouchedCount();
+        } else {
+            for (int i = 0; i < pendingOpenCells.size; i++) {
+                map.openCell(pendingOpenCells.get(i));
+                playerCellsTouched += map.getLastTouchedCount();
+            }
+            if (pendingPlayerCell != -1) {
+                map.moveGoal(pendingPlayerCell);
+                playerCellsTouched += map.getLastTouchedCount();
+                if (map.getLastTouchedCount() * 4 > world.getWidth() * world.getHeight()) {
+                    moveRepairPays = false;
+                }
+            }
+        }
+        clearPlayerRepairs();
+    }
+
+    private void clearPlayerRepairs() {
+        playerRepairPending = false;
+        pendingPlayerCell = -1;
+        pendingOpenCells.clear();
+    }
+
+    public void invalidate(Goal goal) {
+        dirty[goal.ordinal()] = true;
+        if (goal == Goal.Player) {
+            playerInvalidationCount++;
+            dirty[Goal.Flee.ordinal()] = true;
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < GOALS.length; i++) {
+            dirty[i] = true;
+        }
+    }
+
+    private void compute(Goal goal, DijkstraMap map) {
+        switch (goal) {
+            case Player:
+                computeTowards(world.getPlayer(), map);
+                break;
+            case Flee:
+                map.computeScaled(get(Goal.Player), FLEE_COEFFICIENT);
+                break;
+        }
+    }
+
+    private void computeTowards(Entity target, DijkstraMap map) {
+        Position position = target != null ? positionMapper.get(target) : null;
+        DistanceTable distanceTable = world.getDistanceTable();
+        if (position != null && distanceTable != null) {
+            map.copyFrom(distanceTable, world.getCellIndex(position.x, position.y));
+        } else if (position != null) {
+            map.compute(world.getCellIndex(position.x, position.y));
+        } else {
+            map.clear();
+        }
+    }
+}
@@ -5,9 +5,7 @@ import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Rectangle;
-import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.utils.ScissorStack;
-import com.badlogic.gdx.utils.IntMap;
 
 
 import static com.dg.ssrl.Components.*;
@@ -15,12 +13,19 @@ import static com.dg.ssrl.Components.*;
 public class MapRenderer {
     private static final String tag = "MapRenderer";
 
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+
     private final Assets assets;
 
     private int virtualWidth;
     private int virtualHeight;
 
     public Rectangle bounds = new Rectangle();
+    private final Rectangle moveBounds = new Rectangle();
+
+    // darkens tiles the player can not see
+    public boolean dimUnseenTiles = false;
+    private final Color dimmedColor = new Color();
 
     // Autotiling
     private int currentAutoTileWorldSequenceId = -1;
@@ -47,12 +52,9 @@ public class MapRenderer {
         mapTiles = new TextureRegion[height][width];
         floors = new boolean[height][width];
 
-        World.Cell[][] cells = world.getCells();
-
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                World.Cell cell = cells[y][x];
-                if (cell.type == World.Cell.Type.Floor) {
+                if (world.getTileType(x, y) == TileType.Floor) {
                     mapTiles[y][x] = assets.floor;
                     floors[y][x] = true;
                 } else {
@@ -60,22 +62,22 @@ public class MapRenderer {
                     int indexValue = 0;
                     Position p = new Position(x,y);
                     p.translate(Direction.NORTH);
-                    if (world.contains(p) && world.getCell(p).type == World.Cell.Type.Wall) {
+                    if (world.contains(p) && world.getTileType(p) == TileType.Wall) {
                         indexValue += 1;
                     }
                     p.set(x, y);
                     p.translate(Direction.EAST);
-                    if (world.contains(p) && world.getCell(p).type == World.Cell.Type.Wall) {
+                    if (world.contains(p) && world.getTileType(p) == TileType.Wall) {
                         indexValue += 2;
                     }
                     p.set(x, y);
                     p.translate(Direction.SOUTH);
-                    if (world.contains(p) && world.getCell(p).type == World.Cell.Type.Wall) {
+                    if (world.contains(p) && world.getTileType(p) == TileType.Wall) {
                         indexValue += 4;
                     }
                     p.set(x, y);
                     p.translate(Direction.WEST);
-                    if (world.contains(p) && world.getCell(p).type == World.Cell.Type.Wall) {
+                    if (world.contains(p) && world.getTileType(p) == TileType.Wall) {
                         indexValue += 8;
                     }
                     mapTiles[y][x] = assets.autoTileSet[indexValue];
@@ -104,16 +106,23 @@ public class MapRenderer {
         ScissorStack.pushScissors(scissors);
         //spriteBatch.setColor(Color.COLOR_WHITE);
 
+        int viewerCell = -1;
+        Entity player = world.getPlayer();
+        if (dimUnseenTiles && player != null) {
+            Position playerPosition = positionMapper.get(player);
+            viewerCell = world.getCellIndex(playerPosition.x, playerPosition.y);
+        }
+
         float yy = bounds.y;
         for (int y = 0; y < height; y++) {
             float xx = bounds.x;
             for (int x = 0; x < width; x++) {
 
-                if(floors[y][x]) {
-                    spriteBatch.setColor(Assets.COLOR_NIGHT_BLUE);
-                } else {
-                    spriteBatch.setColor(world.wallColor);
+                Color color = floors[y][x] ? Assets.COLOR_NIGHT_BLUE : world.wallColor;
+                if (viewerCell != -1 && !world.canSee(viewerCell, world.getCellIndex(x, y))) {
+                    color = dimmedColor.set(color).mul(0.5f, 0.5f, 0.5f, 1f);
                 }
+                spriteBatch.setColor(color);
                 TextureRegion region = mapTiles[y][x];
                 spriteBatch.draw(region, xx, yy);
                 xx += Assets.TILE_SIZE;
@@ -123,46 +132,31 @@ public class MapRenderer {
 
         spriteBatch.setColor(Color.WHITE);
 
-        int renderPass = 0;
-        boolean needAnotherRenderPass = true;
-        while (needAnotherRenderPass) {
-            needAnotherRenderPass = false;
-            for (IntMap.Entry<Entity> entry : world.entities.entries()) {
-                Entity entity = entry.value;
-                if (entity.alive) {
-                    Sprite sprite = entity.getComponent(Sprite.class);
-
-                    if (sprite != null) {
-                        if (sprite.renderPass == renderPass) {
-                            spriteBatch.setColor(sprite.color);
-                            MoveAnimation moveAnimation = entity.getComponent(MoveAnimation.class);
-
-                            if (moveAnimation != null) {
-                                Rectangle moveBounds = new Rectangle(moveAnimation.bounds);
-                                Vector2 position = new Vector2();
-                                moveBounds.getPosition(position);
-                                renderWithFacing(position, moveAnimation.direction, sprite, spriteBatch);
-                                if (!world.bounds.contains(moveBounds)) {
-
-                                    float offsetX = moveAnimation.direction.dx * world.bounds.width;
-                                    float offsetY = moveAnimation.direction.dy * world.bounds.height;
-
-                                    position.set(moveBounds.x - offsetX, moveBounds.y - offsetY);
-                                    renderWithFacing(position, moveAnimation.direction, sprite, spriteBatch);
-                                }
-                            }
-                            Effect effect = entity.getComponent(Effect.class);
-                            if (effect != null) {
-                                renderEffect(effect, sprite, spriteBatch);
-                            }
-                        } else if (sprite.renderPass > renderPass) {
-                            needAnotherRenderPass = true;
-                        }
-                    }
-
+        ComponentStore store = world.getComponentStore();
+        for (int row = 0; row < store.size(); row++) {
+            if (!store.isAlive(row)) {
+                continue;
+            }
+            Sprite sprite = store.getSprite(row);
+            spriteBatch.setColor(sprite.color);
+            if (store.isAnimated(row)) {
+                Direction direction = store.getDirection(row);
+                float x = store.getX(row);
+                float y = store.getY(row);
+                renderWithFacing(x, y, direction, sprite, spriteBatch);
+                moveBounds.set(x, y, Assets.TILE_SIZE, Assets.TILE_SIZE);
+                if (!world.bounds.contains(moveBounds)) {
+
+                    float offsetX = direction.dx * world.bounds.width;
+                    float offsetY = direction.dy * world.bounds.height;
+
+                    renderWithFacing(x - offsetX, y - offsetY, direction, sprite, spriteBatch);
                 }
             }
-            renderPass++;
+            Effect effect = store.getEffect(row);
+            if (effect != null) {
+                renderEffect(effect, sprite, spriteBatch);
+            }
         }
 
         spriteBatch.flush();
@@ -177,19 +171,19 @@ public class MapRenderer {
         }
     }
 
-    private void renderWithFacing(Vector2 position, Direction direction, Sprite sprite, SpriteBatch spriteBatch) {
+    private void renderWithFacing(float x, float y, Direction direction, Sprite sprite, SpriteBatch spriteBatch) {
         spriteBatch.setColor(sprite.color);
         switch (direction) {
             case NORTH:
-                spriteBatch.draw(sprite.getTextureRegion(), bounds.x + position.x, bounds.y + position.y, 4, 4, 8, 8, 1, 1, 270);
+                spriteBatch.draw(sprite.getTextureRegion(), bounds.x + x, bounds.y + y, 4, 4, 8, 8, 1, 1, 270);
                 break;
             case SOUTH:
-                spriteBatch.draw(sprite.getTextureRegion(), bounds.x + position.x, bounds.y + position.y, 4, 4, 8, 8, 1, 1, 90);
+                spriteBatch.draw(sprite.getTextureRegion(), bounds.x + x, bounds.y + y, 4, 4, 8, 8, 1, 1, 90);
                 break;
             case EAST:
                 spriteBatch.draw(sprite.getTextureRegion().getTexture(),
-                        bounds.x + position.x,
-                        bounds.y + position.y,
+                        bounds.x + x,
+                        bounds.y + y,
                         Assets.TILE_SIZE,
                         Assets.TILE_SIZE,
                         sprite.getTextureRegion().getRegionX(),
@@ -201,8 +195,8 @@ public class MapRenderer {
                 break;
             case WEST:
                 spriteBatch.draw(sprite.getTextureRegion().getTexture(),
-                        bounds.x + position.x,
-                        bounds.y + position.y,
+                        bounds.x + x,
+                        bounds.y + y,
                         Assets.TILE_SIZE,
                         Assets.TILE_SIZE,
                         sprite.getTextureRegion().getRegionX(),
@@ -12,6 +12,11 @@ import static com.dg.ssrl.Components.Stats;
 
 public class MonsterBrains {
 
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+    private static final ComponentMapper<MoveAnimation> moveAnimationMapper = ComponentMapper.getFor(MoveAnimation.class);
+    private static final ComponentMapper<ItemContainer> itemContainerMapper = ComponentMapper.getFor(ItemContainer.class);
+    private static final ComponentMapper<Stats> statsMapper = ComponentMapper.getFor(Stats.class);
+
     public static class RegularBrain implements Brain {
         private static final String tag = "RegularBrain";
 
@@ -33,22 +38,23 @@ public class MonsterBrains {
 
         private Direction findAttackDirection(World world, final Position current) {
             Direction targetDirection = Direction.NONE;
-            Position targetPosition = current.copy();
+            int currentCell = world.getCellIndex(current.x, current.y);
+
+            int playerCell = -1;
+            Entity player = world.getPlayer();
+            if (player != null) {
+                Position playerPosition = positionMapper.get(player);
+                playerCell = world.getCellIndex(playerPosition.x, playerPosition.y);
+            }
 
-            int lowestValue = world.dijkstraMap[current.y][current.x];
+            int lowestValue = world.getDistanceToPlayer(current.x, current.y);
             Collections.shuffle(directionChoices);
-            for (Direction direction : directionChoices) {
-                targetPosition.set(current);
-                targetPosition = world.translateWraparound(targetPosition, direction);
-
-                Entity player = world.getPlayer();
-                boolean targetIsPlayer = false;
-                if (player != null) {
-                    targetIsPlayer = targetPosition.equals(player.getComponent(Position.class));
-                }
+            for (int i = 0; i < directionChoices.size(); i++) {
+                Direction direction = directionChoices.get(i);
+                int targetCell = world.getNeighbor(currentCell, direction);
 
-                if (targetIsPlayer || world.isWalkable(targetPosition)) {
-                    int value = world.dijkstraMap[targetPosition.y][targetPosition.x];
+                if (targetCell == playerCell || world.isWalkable(targetCell)) {
+                    int value = world.getDistanceToPlayer(targetCell);
                     if (value < lowestValue) {
                         lowestValue = value;
                         targetDirection = direction;
@@ -60,17 +66,17 @@ public class MonsterBrains {
 
         private Direction findFleeDirection(World world, final Position current) {
             Direction targetDirection = Direction.NONE;
-            Position targetPosition = current.copy();
+            int currentCell = world.getCellIndex(current.x, current.y);
+            DijkstraMap fleeMap = world.getGoalMap(GoalMaps.Goal.Flee);
 
-            int highestValue = 0;
+            int lowestValue = fleeMap.get(currentCell);
             for (Direction direction : Direction.CARDINAL_DIRECTIONS) {
-                targetPosition.set(current);
-                targetPosition = world.translateWraparound(targetPosition, direction);
+                int targetCell = world.getNeighbor(currentCell, direction);
 
-                if (world.isWalkable(targetPosition)) {
-                    int value = world.dijkstraMap[targetPosition.y][targetPosition.x];
-                    if (value != Integer.MAX_VALUE && value > highestValue) {
-                        highestValue = value;
+                if (world.isWalkable(targetCell)) {
+                    int value = fleeMap.get(targetCell);
+                    if (value < lowestValue) {
+                        lowestValue = value;
                         targetDirection = direction;
                     }
                 }
@@ -81,14 +87,14 @@ public class MonsterBrains {
         @Override
         public boolean act(final World world) {
             final Entity entity = world.getEntity(entityId);
-            if (!entity.alive) {
+            if (entity == null || !entity.alive) {
                 return true;
             }
-            final MoveAnimation moveAnimation = entity.getComponent(MoveAnimation.class);
+            final MoveAnimation moveAnimation = moveAnimationMapper.get(entity);
 
             if (!moveAnimation.isBusy()) {
-                final Position current = entity.getComponent(Position.class);
-                ItemContainer itemContainer = entity.getComponent(ItemContainer.class);
+                final Position current = positionMapper.get(entity);
+                ItemContainer itemContainer = itemContainerMapper.get(entity);
 
                 Direction targetDirection;
                 if (itemContainer != null && itemContainer.getAmount(ItemType.Key) > 0) {
@@ -98,17 +104,16 @@ public class MonsterBrains {
                 }
 
                 boolean doMove = targetDirection != Direction.NONE;
-                if (targetDirection == moveAnimation.direction) {
+                if (doMove && targetDirection == moveAnimation.direction) {
 
-                    Position target = current.copy();
-                    world.translateWraparound(target, targetDirection);
+                    int target = world.getNeighbor(world.getCellIndex(current.x, current.y), targetDirection);
 
-                    World.Cell targetCell = world.getCell(target);
-                    for (int i = 0; i < targetCell.getEntityCount(); i++) {
-                        Entity targetEntity = world.getEntity(targetCell.getEntityId(i));
-                        Stats targetStats = targetEntity.getComponent(Stats.class);
-                        if (targetStats != null && targetStats.monsterType != MonsterType.Player) {
-                            doMove = false;
+                    if (world.cellContains(target, World.CELL_STATS)) {
+                        for (Entity targetEntity = world.getFirstEntityAt(target); targetEntity != null; targetEntity = world.getNextEntityAt(targetEntity)) {
+                            Stats targetStats = statsMapper.get(targetEntity);
+                            if (targetStats != null && targetStats.monsterType != MonsterType.Player) {
+                                doMove = false;
+                            }
                         }
                     }
                 }
@@ -137,9 +142,12 @@ public class MonsterBrains {
         public boolean act(World world) {
             EntityFactory entityFactory = world.getEntityFactory();
             Entity entity = world.getEntity(entityId);
+            if (entity == null) {
+                return true;
+            }
 
             ticksToActivate--;
-            Position position = entity.getComponent(Position.class).copy();
+            Position position = positionMapper.get(entity);
 
             Entity explosion = entityFactory.makeDamageEffect(position.x * Assets.TILE_SIZE + Assets.TILE_SIZE/2, position.y * Assets.TILE_SIZE + Assets.TILE_SIZE/2);
             world.addEntity(explosion);
@@ -175,12 +183,15 @@ public class MonsterBrains {
             boolean grow = random.nextFloat() < tryGrow;
             if (grow) {
                 Entity entity = world.getEntity(entityId);
-                Position position = entity.getComponent(Position.class).copy();
+                if (entity == null) {
+                    return true;
+                }
+                Position current = positionMapper.get(entity);
                 Direction growDirection = Direction.CARDINAL_DIRECTIONS[random.nextInt(Direction.CARDINAL_DIRECTIONS.length)];
-                world.translateWraparound(position, growDirection);
-                if (world.isWalkable(position)) {
+                int cell = world.getNeighbor(world.getCellIndex(current.x, current.y), growDirection);
+                if (world.isWalkable(cell) && !world.isReserved(cell)) {
                     EntityFactory entityFactory = world.getEntityFactory();
-                    Entity spawnedGrower = entityFactory.makeMonster(position.x, position.y, MonsterType.Grower);
+                    Entity spawnedGrower = entityFactory.makeMonster(world.getCellX(cell), world.getCellY(cell), MonsterType.Grower);
                     world.addEntity(spawnedGrower);
 
                     sounds.play(Assets.Sounds.SoundId.SPAWN);
@@ -211,31 +222,20 @@ public class MonsterBrains {
         @Override
         public boolean act(World world) {
             Entity entity = world.getEntity(entityId);
-            MoveAnimation moveAnimation = entity.getComponent(MoveAnimation.class);
+            if (entity == null) {
+                return true;
+            }
+            MoveAnimation moveAnimation = moveAnimationMapper.get(entity);
 
+            boolean acted = true;
             if (world.getPlayer() != null) {
                 boolean rotate = true;
 
-                Position position = entity.getComponent(Position.class);
-                final Position bulletEnd = position.copy().translate(moveAnimation.direction);
-                boolean hitSomething = false;
-                while (!hitSomething) {
-                    world.wraparound(bulletEnd);
-
-                    if (world.isWalkable(bulletEnd)) {
-                        bulletEnd.translate(moveAnimation.direction);
-                    } else {
-                        hitSomething = true;
-                    }
-                }
-
-                World.Cell cell = world.getCell(bulletEnd);
-                for (int i = 0; i < cell.getEntityCount(); i++) {
-                    int entityId = cell.getEntityId(i);
-                    if (world.getEntity(entityId).id == world.getPlayer().id) {
-                        rotate = false;
-                        break;
-                    }
+                Position position = positionMapper.get(entity);
+                Position playerPosition = positionMapper.get(world.getPlayer());
+                int endCell = world.getRayEndCell(world.getCellIndex(position.x, position.y), moveAnimation.direction);
+                if (endCell == world.getCellIndex(playerPosition.x, playerPosition.y)) {
+                    rotate = false;
                 }
 
                 if (rotate) {
@@ -246,11 +246,11 @@ public class MonsterBrains {
                         rotateDelay = ROTATE_DELAY;
                     }
                 } else {
-                    BrainCore.fire(world, entity, moveAnimation.direction, ItemType.Ammo, sounds);
+                    acted = BrainCore.fire(world, entity, moveAnimation.direction, ItemType.Ammo, sounds);
                 }
             }
 
-            return true;
+            return acted;
         }
     }
 }
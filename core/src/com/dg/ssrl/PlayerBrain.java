@@ -7,6 +7,9 @@ class PlayerBrain implements Actor.Brain {
 
 	private static final String tag = "PlayerBrain";
 
+    private static final ComponentMapper<MoveAnimation> moveAnimationMapper = ComponentMapper.getFor(MoveAnimation.class);
+    private static final ComponentMapper<ItemContainer> itemContainerMapper = ComponentMapper.getFor(ItemContainer.class);
+
     private final PlayerInputAdapter playerInputAdapter;
     private final Assets.Sounds sounds;
 
@@ -20,7 +23,7 @@ class PlayerBrain implements Actor.Brain {
         boolean acted = false;
 
         final Entity player = world.getEntity(world.playerEntityId);
-        final MoveAnimation moveAnimation = player.getComponent(MoveAnimation.class);
+        final MoveAnimation moveAnimation = moveAnimationMapper.get(player);
 
         if (!moveAnimation.isBusy()) {
             Direction moveDirection = playerInputAdapter.getMovementDirection();
@@ -41,28 +44,34 @@ class PlayerBrain implements Actor.Brain {
         boolean acted = false;
 
         final Entity player = world.getEntity(world.playerEntityId);
-        final MoveAnimation moveAnimation = player.getComponent(MoveAnimation.class);
-        ItemContainer itemContainer = player.getComponent(ItemContainer.class);
+        final MoveAnimation moveAnimation = moveAnimationMapper.get(player);
+        ItemContainer itemContainer = itemContainerMapper.get(player);
 
         PlayerInputAdapter.Action action;
-        while ((action = playerInputAdapter.popAction()) != null) {
+        // an action stays queued while a shot in flight keeps it from firing
+        while ((action = playerInputAdapter.peekAction()) != null) {
             if (action == PlayerInputAdapter.Action.FIRE_PRIMARY) {
                 int ammoCount = itemContainer.getAmount(ItemType.Ammo);
                 if (ammoCount > 0) {
+                    if (!BrainCore.fire(world, player, moveAnimation.direction, ItemType.Ammo, sounds)) {
+                        break;
+                    }
                     Gdx.app.log(tag, "FIRE_PRIMARY");
                     itemContainer.remove(ItemType.Ammo, 1);
-                    BrainCore.fire(world, player, moveAnimation.direction, ItemType.Ammo, sounds);
                     acted = true;
                 }
             } else if (action == PlayerInputAdapter.Action.FIRE_SECONDARY) {
                 int rocketCount = itemContainer.getAmount(ItemType.Rocket);
                 if (rocketCount > 0) {
+                    if (!BrainCore.fire(world, player, moveAnimation.direction, ItemType.Rocket, sounds)) {
+                        break;
+                    }
                     Gdx.app.log(tag, "FIRE_SECONDARY");
                     itemContainer.remove(ItemType.Rocket, 1);
-                    BrainCore.fire(world, player, moveAnimation.direction, ItemType.Rocket, sounds);
                     acted = true;
                 }
             }
+            playerInputAdapter.popAction();
         }
         return acted;
     }
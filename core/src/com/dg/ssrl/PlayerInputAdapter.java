@@ -45,6 +45,13 @@ public class PlayerInputAdapter extends InputAdapter implements GestureDetectorE
         return movementDirection;
     }
 
+    public Action peekAction() {
+        if (actionQueue.size() > 0) {
+            return actionQueue.get(0);
+        }
+        return null;
+    }
+
     public Action popAction() {
         if (actionQueue.size() > 0) {
             return actionQueue.remove(0);
@@ -0,0 +1,105 @@
+package com.dg.ssrl;
+
+import java.util.Arrays;
+
+/**
+ * For every cell and cardinal direction, the number of walkable cells a projectile passes before it reaches the next
+ * blocked cell, following the line around the wrapping map. World marks the row and column of a cell dirty when its
+ * blocked state changes, dirty lines are recomputed on the next query.
+ */
+public class RayTable {
+
+    // the line has no blocked cell at all
+    public static final int OPEN = -1;
+
+    private final World world;
+    private final int width;
+    private final int height;
+    private final int[] lengths;
+    private final boolean[] rowDirty;
+    private final boolean[] columnDirty;
+
+    public RayTable(World world) {
+        this.world = world;
+        this.width = world.getWidth();
+        this.height = world.getHeight();
+        lengths = new int[width * height * 4];
+        rowDirty = new boolean[height];
+        columnDirty = new boolean[width];
+        Arrays.fill(rowDirty, true);
+        Arrays.fill(columnDirty, true);
+    }
+
+    public void invalidate(int cell) {
+        rowDirty[cell / width] = true;
+        columnDirty[cell % width] = true;
+    }
+
+    /**
+     * Walkable cells between cell and the first blocked cell in direction, or OPEN.
+     */
+    public int getLength(int cell, Direction direction) {
+        if (direction.dx != 0) {
+            int y = cell / width;
+            if (rowDirty[y]) {
+                rowDirty[y] = false;
+                computeLine(y * width, 1, width, Direction.EAST, Direction.WEST);
+            }
+        } else {
+            int x = cell % width;
+            if (columnDirty[x]) {
+                columnDirty[x] = false;
+                computeLine(x, width, height, Direction.NORTH, Direction.SOUTH);
+            }
+        }
+        return lengths[cell * 4 + direction.index];
+    }
+
+    /**
+     * The blocked cell a projectile fired from cell in direction ends in. On an open line it travels a full lap and
+     * ends in cell itself.
+     */
+    public int getEndCell(int cell, Direction direction) {
+        int length = getLength(cell, direction);
+        if (length == OPEN) {
+            return cell;
+        }
+        int x = (cell % width + direction.dx * (length + 1)) % width;
+        int y = (cell / width + direction.dy * (length + 1)) % height;
+        return (y < 0 ? y + height : y) * width + (x < 0 ? x + width : x);
+    }
+
+    // first is the cell at position 0 of the line, positions increase by stride in direction forward
+    private void computeLine(int first, int stride, int length, Direction forward, Direction backward) {
+        int blocked = -1;
+        for (int i = 0; i < length; i++) {
+            if (world.isBlocked(first + i * stride)) {
+                blocked = i;
+                break;
+            }
+        }
+        if (blocked == -1) {
+            for (int i = 0; i < length; i++) {
+                int cell = first + i * stride;
+                lengths[cell * 4 + forward.index] = OPEN;
+                lengths[cell * 4 + backward.index] = OPEN;
+            }
+            return;
+        }
+        // walk backwards from the blocked cell counting the walkable run ahead of each cell, then the same forwards
+        int run = 0;
+        for (int n = 1; n <= length; n++) {
+            int i = ((blocked - n) % length + length) % length;
+            int ahead = (i + 1) % length;
+            run = world.isBlocked(first + ahead * stride) ? 0 : run + 1;
+            lengths[(first + i * stride) * 4 + forward.index] = run;
+        }
+        run = 0;
+        for (int n = 1; n <= length; n++) {
+            int i = (blocked + n) % length;
+            int behind = (i - 1 + length) % length;
+            run = world.isBlocked(first + behind * stride) ? 0 : run + 1;
+            lengths[(first + i * stride) * 4 + backward.index] = run;
+        }
+    }
+}
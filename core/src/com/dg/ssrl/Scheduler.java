@@ -1,28 +1,132 @@
 package com.dg.ssrl;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.badlogic.gdx.utils.Array;
+
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.dg.ssrl.Components.Actor;
 
+/**
+ * Turn scheduler backed by a queue of actors keyed by (due time, sequence). The binary heap makes adding, removing and
+ * re-queueing an actor O(log n), the timing wheel makes them O(1) for worlds with very many actors.
+ *
+ * A busy actor, one whose act returns false, is set aside until the end of the update and the actors after it carry
+ * on. It goes back with its old key, so it is first in line on the next update and the order stays deterministic. A
+ * busy blocking actor, the player waiting for input, stops the update instead.
+ *
+ * Locking the scheduler stops every actor. Locking a single actor only keeps that actor from acting, it counts as busy
+ * until it is unlocked, so independent actors carry on while its animation plays.
+ *
+ * An update runs as many turns as fit in its time budget, and at least one, judging each next turn by the last one. An
+ * update that still takes noticeably longer than the budget counts as an overrun. An update also stops once nobody
+ * acted for as many visits as it takes every queued actor to become due, so actors that can't act don't spin through
+ * the budget.
+ */
 public class Scheduler {
 
-    private static final int MAX_ITERATIONS_PER_UPDATE = 5;
+    public enum Mode {
+        // visits actors in the order of the original round robin list, every visit ticks the actor
+        ROUND_ROBIN,
+        // an actor is due speed.ticksToAct time units after it last acted, only due actors are visited
+        ENERGY,
+        // same order as ENERGY, kept in a timing wheel instead of a heap
+        TIMING_WHEEL;
+
+        boolean isTimed() {
+            return this != ROUND_ROBIN;
+        }
+    }
+
+    public static final long DEFAULT_TIME_BUDGET_NANOS = 2000000L;
+    // going over by less than this is the cost of the last clock reading and requeueing, not a long turn
+    private static final long OVERRUN_SLACK_NANOS = 50000L;
+    // the most visits a ROUND_ROBIN actor takes to gather the ticks to act
+    private static final int MAX_TICKS_TO_ACT = maxTicksToAct();
 
+    private final Mode mode;
     private AtomicInteger lockCount = new AtomicInteger(0);
-    private List<Actor> queue = new ArrayList<Actor>();
+    private final ActorQueue queue;
+
+    private long time;
+    private long nextSequence;
+    private long frontSequence;
+
+    private Actor current;
+    private boolean currentRemoved;
+    private boolean currentActed;
+
+    private final Array<Actor> yielded = new Array<Actor>();
+
+    private long timeBudgetNanos = DEFAULT_TIME_BUDGET_NANOS;
+    private int overrunCount;
+    private long lastOverrunNanos;
+
+    public Scheduler() {
+        this(Mode.ROUND_ROBIN);
+    }
+
+    public Scheduler(Mode mode) {
+        this.mode = mode;
+        this.queue = mode == Mode.TIMING_WHEEL ? new TimingWheel() : new ActorHeap();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setTimeBudget(long nanos) {
+        this.timeBudgetNanos = nanos;
+    }
+
+    public long getTimeBudget() {
+        return timeBudgetNanos;
+    }
+
+    /**
+     * Number of updates that took longer than their time budget.
+     */
+    public int getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * Nanoseconds the last overrunning update went over its budget.
+     */
+    public long getLastOverrunNanos() {
+        return lastOverrunNanos;
+    }
 
     public void clear() {
         queue.clear();
+        yielded.clear();
+        time = 0;
+        overrunCount = 0;
+        lastOverrunNanos = 0;
     }
 
     public void addActor(Actor actor) {
-        queue.add(actor);
+        actor.scheduler = this;
+        // a lock taken in a world that stopped updating, say on the way to the exit, is never released
+        actor.locks = 0;
+        actor.lastActTime = time;
+        actor.dueTime = mode.isTimed() ? time + actor.getTicksToAct() : 0;
+        append(actor);
     }
 
     public void removeActor(Actor actor) {
-        queue.remove(actor);
+        if (!queue.remove(actor) && !yielded.removeValue(actor, true) && actor == current) {
+            currentRemoved = true;
+        }
+        actor.scheduler = null;
+    }
+
+    void onSpeedChanged(Actor actor) {
+        if (mode.isTimed()) {
+            actor.dueTime = actor.lastActTime + actor.getTicksToAct();
+            if (queue.contains(actor)) {
+                queue.update(actor);
+            }
+        }
     }
 
     public void lock() {
@@ -36,6 +140,21 @@ public class Scheduler {
         }
     }
 
+    public void lock(Actor actor) {
+        actor.locks++;
+    }
+
+    public void unlock(Actor actor) {
+        if (actor.locks == 0) {
+            throw new RuntimeException("Can't unlock already unlocked actor");
+        }
+        actor.locks--;
+    }
+
+    public boolean isLocked(Actor actor) {
+        return actor.locks > 0;
+    }
+
     private boolean isLocked() {
         return lockCount.get() > 0;
     }
@@ -45,26 +164,109 @@ public class Scheduler {
             return;
         }
 
-        int iterations = 0;
-        while (world.isRunning() && iterations < MAX_ITERATIONS_PER_UPDATE) {
-            Actor actor = queue.remove(0);
-            if (actor.alive && actor.tick()) {
-                if (actor.act(world)) {
-                    actor.reset();
-                    queue.add(actor);
-                } else {
-                    queue.add(0, actor);
+        long start = System.nanoTime();
+        long turnStart = start;
+        int idleVisits = 0;
+        while (world.isRunning() && queue.size() > 0) {
+            Actor actor = queue.poll();
+            if (!visit(world, actor)) {
+                // a yielded actor is out of the queue until the update ends, so it is visited at most once
+                if (yielded.size == 0 || yielded.peek() != actor || isLocked()) {
                     break;
                 }
-            } else {
-                queue.add(actor);
+            } else if (isLocked()) {
+                break;
+            }
+            idleVisits = currentActed ? 0 : idleVisits + 1;
+            if (idleVisits > (queue.size() + yielded.size) * MAX_TICKS_TO_ACT) {
+                break;
             }
-            if (isLocked()) {
+            // stop if another turn as long as the last one would not fit
+            long now = System.nanoTime();
+            if (now - start + now - turnStart > timeBudgetNanos) {
                 break;
-            } else {
-                iterations++;
             }
+            turnStart = now;
         }
+        requeueYielded();
+
+        long elapsed = System.nanoTime() - start;
+        if (elapsed > timeBudgetNanos + OVERRUN_SLACK_NANOS) {
+            overrunCount++;
+            lastOverrunNanos = elapsed - timeBudgetNanos;
+        }
+    }
+
+    private void requeueYielded() {
+        // prepended from the back, so yielded actors keep their order in front of everybody else
+        for (int i = yielded.size - 1; i >= 0; i--) {
+            Actor actor = yielded.get(i);
+            if (mode == Mode.ROUND_ROBIN) {
+                actor.sequence = --frontSequence;
+            }
+            queue.add(actor);
+        }
+        yielded.clear();
     }
 
+    /**
+     * Lets a dequeued actor act if it is due and queues it again.
+     * @return false if the actor was busy, it then yields, or if it is blocking, is first in line and the update stops
+     */
+    private boolean visit(World world, Actor actor) {
+        current = actor;
+        currentRemoved = false;
+        currentActed = false;
+        boolean due;
+        if (mode.isTimed()) {
+            time = Math.max(time, actor.dueTime);
+            due = actor.alive;
+        } else {
+            due = actor.alive && actor.tick();
+        }
+
+        boolean acted = true;
+        if (due) {
+            acted = actor.locks == 0 && actor.act(world);
+            if (acted) {
+                actor.reset();
+                actor.lastActTime = time;
+                currentActed = true;
+            }
+        }
+        current = null;
+        if (currentRemoved) {
+            return acted;
+        }
+
+        if (!acted) {
+            if (!actor.isBlocking()) {
+                yielded.add(actor);
+                return false;
+            }
+            if (mode == Mode.ROUND_ROBIN) {
+                actor.sequence = --frontSequence;
+            }
+            queue.add(actor);
+        } else {
+            if (mode.isTimed()) {
+                actor.dueTime = time + actor.getTicksToAct();
+            }
+            append(actor);
+        }
+        return acted;
+    }
+
+    private static int maxTicksToAct() {
+        int max = 0;
+        for (Actor.Speed speed : Actor.Speed.values()) {
+            max = Math.max(max, speed.ticksToAct);
+        }
+        return max;
+    }
+
+    private void append(Actor actor) {
+        actor.sequence = nextSequence++;
+        queue.add(actor);
+    }
 }
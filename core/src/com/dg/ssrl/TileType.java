@@ -0,0 +1,14 @@
+package com.dg.ssrl;
+
+public enum TileType {
+    Wall(false),
+    Floor(true);
+
+    static final TileType[] VALUES = values();
+
+    public final boolean walkable;
+
+    TileType(boolean walkable) {
+        this.walkable = walkable;
+    }
+}
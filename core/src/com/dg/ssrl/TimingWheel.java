@@ -0,0 +1,201 @@
+package com.dg.ssrl;
+
+import static com.dg.ssrl.Components.Actor;
+
+/**
+ * Hierarchical timing wheel of actors ordered by due time, then sequence.
+ *
+ * The first wheel has one bucket per tick of the current block of 64 ticks, the second one bucket per block of the
+ * current span of 64 blocks, and actors due even later wait in an overflow list. Buckets are intrusive linked lists,
+ * so adding, removing and re-bucketing an actor is O(1) and polling only touches due actors, plus one cascade of a
+ * bucket whenever time enters a new block or span.
+ */
+class TimingWheel implements ActorQueue {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int SPAN_BITS = 2 * SLOT_BITS;
+
+    // bucket ids stored in Actor.queueIndex, overflow comes after both wheels
+    private static final int BLOCK_BUCKETS = SLOTS;
+    private static final int OVERFLOW = 2 * SLOTS;
+
+    private final Actor[] heads = new Actor[OVERFLOW + 1];
+    private final Actor[] tails = new Actor[OVERFLOW + 1];
+    // one bit per non-empty bucket of each wheel
+    private long tickMask;
+    private long blockMask;
+
+    private long now;
+    private int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(Actor actor) {
+        place(actor);
+        size++;
+    }
+
+    @Override
+    public Actor poll() {
+        if (size == 0) {
+            return null;
+        }
+        while (tickMask == 0) {
+            if (blockMask == 0) {
+                advanceTo(firstOverflowDue() >> SPAN_BITS << SPAN_BITS);
+            } else {
+                // block buckets only hold blocks after the current one
+                advanceTo((now >> SPAN_BITS << SPAN_BITS) | ((long) Long.numberOfTrailingZeros(blockMask) << SLOT_BITS));
+            }
+        }
+        // tick buckets only hold the current tick and later ones of this block
+        now = (now >> SLOT_BITS << SLOT_BITS) | Long.numberOfTrailingZeros(tickMask);
+        Actor first = heads[(int) (now & SLOT_MASK)];
+        unlink(first);
+        size--;
+        return first;
+    }
+
+    @Override
+    public boolean contains(Actor actor) {
+        return actor.queueIndex >= 0;
+    }
+
+    @Override
+    public boolean remove(Actor actor) {
+        if (!contains(actor)) {
+            return false;
+        }
+        unlink(actor);
+        size--;
+        return true;
+    }
+
+    @Override
+    public void update(Actor actor) {
+        unlink(actor);
+        place(actor);
+    }
+
+    @Override
+    public void clear() {
+        for (int bucket = 0; bucket <= OVERFLOW; bucket++) {
+            Actor actor = heads[bucket];
+            while (actor != null) {
+                Actor next = actor.nextQueued;
+                actor.queueIndex = -1;
+                actor.nextQueued = actor.previousQueued = null;
+                actor = next;
+            }
+            heads[bucket] = tails[bucket] = null;
+        }
+        tickMask = blockMask = 0;
+        now = 0;
+        size = 0;
+    }
+
+    /**
+     * Moves the wheels forward to the start of a later block, cascading the overflow when a new span starts and the block
+     * bucket of the new block into the tick buckets.
+     */
+    private void advanceTo(long time) {
+        now = time;
+        if ((now & ((1L << SPAN_BITS) - 1)) == 0) {
+            cascade(OVERFLOW);
+        }
+        cascade(BLOCK_BUCKETS + (int) ((now >> SLOT_BITS) & SLOT_MASK));
+    }
+
+    private void cascade(int bucket) {
+        Actor actor = heads[bucket];
+        heads[bucket] = tails[bucket] = null;
+        clearBit(bucket);
+        while (actor != null) {
+            Actor next = actor.nextQueued;
+            actor.nextQueued = actor.previousQueued = null;
+            place(actor);
+            actor = next;
+        }
+    }
+
+    private long firstOverflowDue() {
+        long first = Long.MAX_VALUE;
+        for (Actor actor = heads[OVERFLOW]; actor != null; actor = actor.nextQueued) {
+            first = Math.min(first, actor.dueTime);
+        }
+        return first;
+    }
+
+    private void place(Actor actor) {
+        // an actor made due in the past by a speed change is due now
+        long due = Math.max(actor.dueTime, now);
+        int bucket;
+        if (due >> SLOT_BITS == now >> SLOT_BITS) {
+            bucket = (int) (due & SLOT_MASK);
+            tickMask |= 1L << bucket;
+        } else if (due >> SPAN_BITS == now >> SPAN_BITS) {
+            int slot = (int) ((due >> SLOT_BITS) & SLOT_MASK);
+            bucket = BLOCK_BUCKETS + slot;
+            blockMask |= 1L << slot;
+        } else {
+            bucket = OVERFLOW;
+        }
+        insert(actor, bucket);
+    }
+
+    // keeps tick buckets sorted, actors mostly arrive in sequence order so the scan from the tail is short. Later
+    // buckets are sorted when they cascade into tick buckets.
+    private void insert(Actor actor, int bucket) {
+        actor.queueIndex = bucket;
+        Actor previous = tails[bucket];
+        while (previous != null && bucket < BLOCK_BUCKETS && ActorHeap.before(actor, previous)) {
+            previous = previous.previousQueued;
+        }
+        Actor next = previous != null ? previous.nextQueued : heads[bucket];
+        actor.previousQueued = previous;
+        actor.nextQueued = next;
+        if (previous != null) {
+            previous.nextQueued = actor;
+        } else {
+            heads[bucket] = actor;
+        }
+        if (next != null) {
+            next.previousQueued = actor;
+        } else {
+            tails[bucket] = actor;
+        }
+    }
+
+    private void unlink(Actor actor) {
+        int bucket = actor.queueIndex;
+        if (actor.previousQueued != null) {
+            actor.previousQueued.nextQueued = actor.nextQueued;
+        } else {
+            heads[bucket] = actor.nextQueued;
+        }
+        if (actor.nextQueued != null) {
+            actor.nextQueued.previousQueued = actor.previousQueued;
+        } else {
+            tails[bucket] = actor.previousQueued;
+        }
+        actor.nextQueued = actor.previousQueued = null;
+        actor.queueIndex = -1;
+        if (heads[bucket] == null) {
+            clearBit(bucket);
+        }
+    }
+
+    private void clearBit(int bucket) {
+        if (bucket < BLOCK_BUCKETS) {
+            tickMask &= ~(1L << bucket);
+        } else if (bucket < OVERFLOW) {
+            blockMask &= ~(1L << (bucket - BLOCK_BUCKETS));
+        }
+    }
+}
@@ -2,12 +2,10 @@ package com.dg.ssrl;
 
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.IntArray;
-import com.badlogic.gdx.utils.IntMap;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -15,58 +13,69 @@ import static com.dg.ssrl.Components.Actor;
 import static com.dg.ssrl.Components.ItemContainer;
 import static com.dg.ssrl.Components.Position;
 import static com.dg.ssrl.Components.Solid;
+import static com.dg.ssrl.Components.Stats;
+import static com.dg.ssrl.Components.Trigger;
 import static com.dg.ssrl.Components.Update;
 
 public class World {
     private static final String tag = "World";
 
 
-    public static class Cell {
-
-        public enum Type {
-            Wall(false),
-            Floor(true);
-            private boolean walkable;
-
-            Type(boolean walkable) {
-                this.walkable = walkable;
-            }
-        }
-        public Type type;
-        private IntArray entityIds = new IntArray();
-
-        public Cell() {
-            type = Type.Floor;
-        }
-
-        boolean isWalkable() {
-            return type.walkable;
-        }
-
-        public int getEntityCount() {
-            return entityIds.size;
-        }
-
-        public int getEntityId(int index) {
-            return entityIds.get(index);
-        }
-
-        public void removeEntity(int entityId) {
-            entityIds.removeValue(entityId);
-        }
-    }
-
     private static final AtomicInteger ID_GENERATOR = new AtomicInteger();
+    private static final byte TILE_FLOOR = (byte)TileType.Floor.ordinal();
+
+    private static final ComponentMapper<Update> updateMapper = ComponentMapper.getFor(Update.class);
+    private static final ComponentMapper<Actor> actorMapper = ComponentMapper.getFor(Actor.class);
+    private static final ComponentMapper<Position> positionMapper = ComponentMapper.getFor(Position.class);
+    private static final ComponentMapper<ItemContainer> itemContainerMapper = ComponentMapper.getFor(ItemContainer.class);
+    private static final ComponentMapper<Solid> solidMapper = ComponentMapper.getFor(Solid.class);
 
     private final int width;
     private final int height;
     private final EntityFactory entityFactory;
     private final Scheduler scheduler;
 
-    private final Cell[][] cells;
+    // tile type ordinals and per-cell entity lists, indexed by y * width + x. Each cell list is an intrusive
+    // doubly linked list threaded through the entity slots.
+    private final byte[] tiles;
+    // cell * 4 + direction index, with wraparound
+    private final int[] neighbors;
+    private final int[] cellHeads;
+    private final int[] cellEntityCounts;
+    private int[] nextInCell = new int[64];
+    private int[] prevInCell = new int[64];
+
+    // one bit per cell, set when the cell is a wall or holds a solid entity
+    private final long[] blockedCells;
+    private final int[] solidCounts;
+
+    // summary of the kinds of entities in each cell, lets cell queries skip the entity list
+    public static final int CELL_SOLID = 1;
+    public static final int CELL_TRIGGER = 2;
+    public static final int CELL_STATS = 4;
+    public static final int CELL_ITEM_CONTAINER = 8;
+    private static final int[] COUNTED_FLAGS = {CELL_TRIGGER, CELL_STATS, CELL_ITEM_CONTAINER};
+    private static final long[] COUNTED_COMPONENT_BITS = {
+            ComponentType.getFor(Trigger.class).bit,
+            ComponentType.getFor(Stats.class).bit,
+            ComponentType.getFor(ItemContainer.class).bit
+    };
+    private final int[] presenceCounts;
+    private final byte[] cellMasks;
+    private static final boolean DEBUG_CHECK_WALKABLE = false;
+
+    // empty floor cells packed at the front of freeCells, freeCellSlots maps a cell to its index there or -1
+    private final int[] freeCells;
+    private final int[] freeCellSlots;
+    private int freeCellCount;
+
+    // cells an animation in flight still resolves in: the path and impact cells of a shot, the cell a bump lands in
+    private final int[] reservations;
 
     private IntArray entitiesToRemove = new IntArray();
-    public IntMap<Entity> entities = new IntMap<Entity>();
+    private final EntityCommandBuffer commandBuffer = new EntityCommandBuffer();
+    private boolean deferCommands;
+    public final EntityTable entities = new EntityTable();
 
     public Rectangle bounds = new Rectangle();
     public int playerEntityId;
@@ -75,7 +84,16 @@ public class World {
     private int wasteTarget;
     public int sequenceId;
     public boolean canSpawnRobot = false;
-    public int[][] dijkstraMap;
+    private final GoalMaps goalMaps;
+    private final DistanceTable distanceTable;
+    private final Bitboard bitboard;
+    private final RayTable rayTable;
+    private final FieldOfView fieldOfView;
+    private int tileVersion;
+
+    private final Array<Family> families = new Array<Family>();
+    private final Family updateFamily = registerFamily(Family.all(Update.class));
+    private final ComponentStore componentStore = new ComponentStore();
 
     private boolean completed;
     private ScoreData scoreData;
@@ -95,14 +113,49 @@ public class World {
 
         this.sequenceId = ID_GENERATOR.incrementAndGet();
 
-        cells = new Cell[height][width];
-        dijkstraMap = new int[height][width];
+        tiles = new byte[width * height];
+        neighbors = new int[width * height * 4];
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                cells[y][x] = new Cell();
-                dijkstraMap[y][x] = Integer.MAX_VALUE;
+                for (Direction direction : Direction.CARDINAL_DIRECTIONS) {
+                    int nx = (x + direction.dx + width) % width;
+                    int ny = (y + direction.dy + height) % height;
+                    neighbors[cellIndex(x, y) * 4 + direction.index] = cellIndex(nx, ny);
+                }
+            }
+        }
+        cellHeads = new int[width * height];
+        cellEntityCounts = new int[width * height];
+        blockedCells = new long[(width * height + 63) / 64];
+        solidCounts = new int[width * height];
+        presenceCounts = new int[width * height * COUNTED_FLAGS.length];
+        cellMasks = new byte[width * height];
+        freeCells = new int[width * height];
+        freeCellSlots = new int[width * height];
+        reservations = new int[width * height];
+        for (int i = 0; i < width * height; i++) {
+            freeCells[i] = i;
+            freeCellSlots[i] = i;
+        }
+        freeCellCount = width * height;
+        Arrays.fill(tiles, (byte)TileType.Floor.ordinal());
+        Arrays.fill(cellHeads, -1);
+
+        if (width <= Bitboard.MAX_WIDTH) {
+            bitboard = new Bitboard(width, height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    bitboard.setFloor(x, y, true);
+                    bitboard.setFree(x, y, true);
+                }
             }
+        } else {
+            bitboard = null;
         }
+        goalMaps = new GoalMaps(this);
+        rayTable = new RayTable(this);
+        fieldOfView = new FieldOfView(this);
+        distanceTable = width * height <= DistanceTable.MAX_CELL_COUNT ? new DistanceTable(this) : null;
 
         bounds.set(0, 0, width * Assets.TILE_SIZE, height * Assets.TILE_SIZE);
     }
@@ -116,39 +169,78 @@ public class World {
     }
 
     public Position getFreePositionFurthestFromPlayer() {
+        int cell = getFreeCellFurthestFromPlayer();
+        return new Position(getCellX(cell), getCellY(cell));
+    }
+
+    public int getFreeCellFurthestFromPlayer() {
+        DijkstraMap playerMap = goalMaps.get(GoalMaps.Goal.Player);
         int value = 0;
-        Position p = new Position();
-        boolean found = true;
-
-        for (int y = 0; y < getHeight(); y++) {
-            for (int x = 0; x < getWidth(); x++) {
-                if (isEmpty(x,y) && dijkstraMap[y][x] > value) {
-                    value = dijkstraMap[y][x];
-                    p.set(x, y);
-                    found = true;
-                }
+        int furthest = 0;
+
+        for (int cell = 0; cell < width * height; cell++) {
+            int distance = playerMap.get(cell);
+            if (isEmpty(cell) && !isReserved(cell) && distance != DijkstraMap.UNREACHABLE && distance > value) {
+                value = distance;
+                furthest = cell;
             }
         }
-        if (found) {
-            return p;
+        return furthest;
+    }
+
+    public int getRandomFreeCell(Random random) {
+        if (freeCellCount == 0) {
+            return -1;
         }
-        return null;
+        // reserved cells are few, the first unreserved one from a random start is as good as a fresh pick
+        int start = random.nextInt(freeCellCount);
+        for (int i = 0; i < freeCellCount; i++) {
+            int cell = freeCells[(start + i) % freeCellCount];
+            if (!isReserved(cell)) {
+                return cell;
+            }
+        }
+        return -1;
     }
 
-    public Position getRandomFreePosition(Random random) {
-        List<Position> free = new ArrayList<Position>();
-        for (int y = 0; y < getHeight(); y++) {
-            for (int x = 0; x < getWidth(); x++) {
-                if (isEmpty(x, y)) {
-                    free.add(new Position(x, y));
-                }
+    /**
+     * Random free cell that can be walked to from cell without passing a wall or a solid entity, skipping reserved
+     * cells, or -1 if there is none. Any free cell on maps too wide for a bitboard.
+     */
+    public int getRandomReachableFreeCell(int cell, Random random) {
+        if (bitboard == null) {
+            return getRandomFreeCell(random);
+        }
+        int count = bitboard.floodOpen(cell % width, cell / width);
+        if (count == 0) {
+            return -1;
+        }
+        int start = random.nextInt(count);
+        for (int i = 0; i < count; i++) {
+            int target = bitboard.getReachedFreeCell((start + i) % count);
+            if (!isReserved(target)) {
+                return target;
             }
         }
-        if (free.size() > 0) {
-            Collections.shuffle(free, random);
-            return free.get(0);
+        return -1;
+    }
+
+    private void updateFree(int cell) {
+        boolean free = TileType.VALUES[tiles[cell]].walkable && cellEntityCounts[cell] == 0;
+        int slot = freeCellSlots[cell];
+        if (free && slot == -1) {
+            freeCells[freeCellCount] = cell;
+            freeCellSlots[cell] = freeCellCount;
+            freeCellCount++;
+        } else if (!free && slot != -1) {
+            int last = freeCells[--freeCellCount];
+            freeCells[slot] = last;
+            freeCellSlots[last] = slot;
+            freeCellSlots[cell] = -1;
+        }
+        if (bitboard != null) {
+            bitboard.setFree(cell % width, cell / width, free);
         }
-        return null;
     }
 
     public int getSector() {
@@ -179,54 +271,95 @@ public class World {
         return scheduler;
     }
 
+    public Family registerFamily(Family family) {
+        families.add(family);
+        for (int i = 0; i < entities.size(); i++) {
+            family.add(entities.getAt(i));
+        }
+        return family;
+    }
+
+    /**
+     * What the renderer draws of the sprite entities, as of the end of the last update.
+     */
+    public ComponentStore getComponentStore() {
+        return componentStore;
+    }
+
     public void update(float delta) {
+        // updaters and their animation callbacks add and move entities, keep those
+        // out of the tables until the iteration is done
+        deferCommands = true;
+        for (int i = 0; i < updateFamily.size(); i++) {
+            Entity entity = updateFamily.get(i);
+            if (entity.alive) {
+                updateMapper.get(entity).update(delta, this);
+            }
+        }
+        deferCommands = false;
+        applyCommands();
+
+        // entities die by clearing alive, from stats, brains and animation callbacks that have no world at hand
         entitiesToRemove.clear();
-        for (IntMap.Entry<Entity> entry : entities.entries()) {
-            Entity entity = entry.value;
-            // TODO: Nullptr crash here because entity is null
-            // TODO: shouldnt happen need to fix :(
-            // TODO: to repro - fire rocket right at start.. doesnt happen every time
-            if (entity != null) {
-                if (entity.alive) {
-                    Update update = entity.getComponent(Update.class);
-                    if (update != null) {
-                        update.update(delta, this);
-                    }
-                } else {
-                    entitiesToRemove.add(entity.id);
-                }
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.getAt(i);
+            if (!entity.alive) {
+                entitiesToRemove.add(entity.id);
             }
         }
 
         for (int i = 0; i < entitiesToRemove.size; i++) {
-            int entityId = entitiesToRemove.get(i);
-            Entity entity = entities.get(entityId);
+            removeDeadEntity(entities.get(entitiesToRemove.get(i)));
+        }
 
-            Actor actor = entity.getComponent(Actor.class);
-            if (actor != null) {
-                scheduler.removeActor(actor);
-            }
-            Position position = entity.getComponent(Position.class);
-            if (position != null) {
-                getCell(position.x, position.y).removeEntity(entity.id);
-            }
-            // dropped items
-            ItemContainer itemContainer = entity.getComponent(ItemContainer.class);
-            if (itemContainer != null && position != null) {
-                for (ItemType itemType : itemContainer.content.keySet()) {
-                    Entity item = entityFactory.makeItem(position.x, position.y, itemType);
-                    addEntity(item);
-                }
-            }
+        scheduler.update(this);
+
+        componentStore.refresh();
+    }
 
-            if (entity.id == playerEntityId) {
-                generateStats();
-                playerEntityId = -1;
+    private void applyCommands() {
+        if (commandBuffer.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < commandBuffer.adds.size; i++) {
+            addEntityNow(commandBuffer.adds.get(i));
+        }
+        for (int i = 0; i < commandBuffer.moves.size; i++) {
+            moveNow(commandBuffer.moves.get(i), commandBuffer.moveTargetsX.get(i), commandBuffer.moveTargetsY.get(i));
+        }
+        commandBuffer.clear();
+    }
+
+    private void removeDeadEntity(Entity entity) {
+        Actor actor = actorMapper.get(entity);
+        if (actor != null) {
+            scheduler.removeActor(actor);
+        }
+        Position position = positionMapper.get(entity);
+        if (position != null) {
+            unlinkFromCell(entity, cellIndex(position.x, position.y));
+        }
+        // dropped items
+        ItemContainer itemContainer = itemContainerMapper.get(entity);
+        if (itemContainer != null && position != null) {
+            for (ItemType itemType : itemContainer.content.keySet()) {
+                Entity item = entityFactory.makeItem(position.x, position.y, itemType);
+                addEntity(item);
             }
-            entities.remove(entityId);
         }
 
-        scheduler.update(this);
+        for (int i = 0; i < families.size; i++) {
+            families.get(i).remove(entity);
+        }
+        componentStore.remove(entity);
+        invalidateGoalMaps(entity);
+
+        if (entity.id == playerEntityId) {
+            generateStats();
+            playerEntityId = -1;
+        }
+        entities.remove(entity);
+        entityFactory.release(entity);
     }
 
     public void generateStats() {
@@ -240,84 +373,97 @@ public class World {
     }
 
     public Position translateWraparound(Position p, Direction direction) {
-        p.translate(direction);
-        return wraparound(p);
+        if (direction == Direction.NONE || !contains(p)) {
+            p.translate(direction);
+            return wraparound(p);
+        }
+        int cell = getNeighbor(cellIndex(p.x, p.y), direction);
+        return p.set(getCellX(cell), getCellY(cell));
     }
 
     public Position wraparound(Position p) {
-        p.x = p.x % width;
-        p.y = p.y % height;
-        while (p.x < 0) {
-            p.x += width;
-        }
-        while (p.y < 0) {
-            p.y += height;
-        }
+        p.x = (p.x % width + width) % width;
+        p.y = (p.y % height + height) % height;
         return p;
     }
 
+    /**
+     * The cell next to cell in a cardinal direction, wrapping around the edges.
+     */
+    public int getNeighbor(int cell, Direction direction) {
+        return neighbors[cell * 4 + direction.index];
+    }
+
+    /**
+     * Neighbour table indexed by cell * 4 + Direction.index. Shared, do not modify.
+     */
+    public int[] getNeighbors() {
+        return neighbors;
+    }
+
 
     public void destroyWall(Position position) {
-        cells[position.y][position.x].type = Cell.Type.Floor;
+        destroyWall(cellIndex(position.x, position.y));
+    }
+
+    public void destroyWall(int cell) {
+        setTile(cell, TileType.Floor);
         // forces re-autotile
         sequenceId = ID_GENERATOR.incrementAndGet();
 
-        if (playerEntityId != -1) {
-            Position p = getPlayer().getComponent(Position.class);
-            updateDijkstraMap(p.x, p.y);
-        }
+        goalMaps.cellOpened(cell);
     }
 
-    private void updateDijkstraMap(int goalX, int goalY) {
-        // http://www.roguebasin.com/index.php?title=The_Incredible_Power_of_Dijkstra_Maps
+    public DijkstraMap getGoalMap(GoalMaps.Goal goal) {
+        return goalMaps.get(goal);
+    }
 
-        // To get a Dijkstra map, you start with an integer array representing your map,
-        // with some set of goal cells set to zero and all the rest set to a very high number.
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if(x == goalX && y == goalY) {
-                    dijkstraMap[y][x] = 0;
-                } else {
-                    dijkstraMap[y][x] = Integer.MAX_VALUE;
-                }
-            }
-        }
+    public GoalMaps getGoalMaps() {
+        return goalMaps;
+    }
 
-        // Iterate through the map's "floor" cells -- skip the impassable wall cells.
-        // If any floor tile has a value that is at least 2 greater than its lowest-value floor neighbor,
-        // set it to be exactly 1 greater than its lowest value neighbor. Repeat until no changes are made.
-        boolean changed = true;
-        int iterations = 0;
-        while(changed) {
-            iterations++;
-            changed = false;
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    if (getCell(x, y).type == Cell.Type.Floor) {
-                        int value = dijkstraMap[y][x];
-                        int lowestNeighborValue = Integer.MAX_VALUE;
-                        for (Direction direction : Direction.CARDINAL_DIRECTIONS) {
-                            Components.Position p = new Components.Position();
-                            p.set(x, y);
-                            p = translateWraparound(p, direction);
-
-                            if (getCell(p.x, p.y).type == Cell.Type.Floor) {
-                                int neighborValue = dijkstraMap[p.y][p.x];
-                                if (neighborValue < lowestNeighborValue) {
-                                    lowestNeighborValue = neighborValue;
-                                }
-                            }
-                        }
-                        if (value - lowestNeighborValue >= 2) {
-                            dijkstraMap[y][x] = lowestNeighborValue + 1;
-                            changed = true;
-                        }
-                    }
-                }
-            }
-        }
+    public int getDistanceToPlayer(int x, int y) {
+        return getDistanceToPlayer(cellIndex(x, y));
+    }
+
+    /**
+     * Reads the player goal map, the one source of player distances. It is filled from the distance table where there
+     * is one, so the table is not queried directly here.
+     */
+    public int getDistanceToPlayer(int cell) {
+        return goalMaps.get(GoalMaps.Goal.Player).get(cell);
+    }
+
+    public DistanceTable getDistanceTable() {
+        return distanceTable;
+    }
+
+    /**
+     * Changes whenever a tile changes, unlike sequenceId which only changes when a wall is destroyed.
+     */
+    public int getTileVersion() {
+        return tileVersion;
+    }
+
+    /**
+     * Whether a wall blocks the line of sight between two cells, see FieldOfView.
+     */
+    public boolean canSee(int fromCell, int toCell) {
+        return fieldOfView.canSee(fromCell, toCell);
+    }
+
+    public FieldOfView getFieldOfView() {
+        return fieldOfView;
+    }
+
+    public Bitboard getBitboard() {
+        return bitboard;
+    }
 
-        //Gdx.app.log(tag, "iterations:" + iterations);
+    private void invalidateGoalMaps(Entity entity) {
+        if (entity.id == playerEntityId) {
+            goalMaps.invalidate(GoalMaps.Goal.Flee);
+        }
     }
 
     public int getWidth() {
@@ -328,24 +474,193 @@ public class World {
         return height;
     }
 
-    public Cell[][] getCells() {
-        return cells;
+    private int cellIndex(int x, int y) {
+        return y * width + x;
+    }
+
+    public int getCellIndex(int x, int y) {
+        return cellIndex(x, y);
+    }
+
+    public int getCellX(int cell) {
+        return cell % width;
+    }
+
+    public int getCellY(int cell) {
+        return cell / width;
+    }
+
+    boolean isFloor(int cell) {
+        return tiles[cell] == TILE_FLOOR;
+    }
+
+    public TileType getTileType(int x, int y) {
+        return TileType.VALUES[tiles[cellIndex(x, y)]];
     }
 
-    public Cell getCell(int x, int y) {
-        return cells[y][x];
+    public TileType getTileType(Position p) {
+        return getTileType(p.x, p.y);
+    }
+
+    public TileType getTileType(int cell) {
+        return TileType.VALUES[tiles[cell]];
+    }
+
+    public void setTileType(int x, int y, TileType type) {
+        setTile(cellIndex(x, y), type);
+        goalMaps.invalidateAll();
+    }
+
+    private void setTile(int cell, TileType type) {
+        tiles[cell] = (byte)type.ordinal();
+        tileVersion++;
+        if (bitboard != null) {
+            bitboard.setFloor(cell % width, cell / width, type == TileType.Floor);
+        }
+        if (distanceTable != null) {
+            distanceTable.invalidate();
+        }
+        updateBlocked(cell);
+        updateFree(cell);
+    }
+
+    private void updateBlocked(int cell) {
+        boolean wasBlocked = isBlocked(cell);
+        if (!TileType.VALUES[tiles[cell]].walkable || solidCounts[cell] > 0) {
+            blockedCells[cell >> 6] |= 1L << cell;
+        } else {
+            blockedCells[cell >> 6] &= ~(1L << cell);
+        }
+        if (wasBlocked != isBlocked(cell)) {
+            rayTable.invalidate(cell);
+        }
+        if (bitboard != null) {
+            bitboard.setSolid(cell % width, cell / width, solidCounts[cell] > 0);
+        }
     }
 
-    public Cell getCell(Position p) {
-        return getCell(p.x, p.y);
+    private static boolean isSolid(Entity entity) {
+        Solid solid = solidMapper.get(entity);
+        return solid != null && solid.isSolid();
+    }
+
+    public int getEntityCount(int x, int y) {
+        return cellEntityCounts[cellIndex(x, y)];
+    }
+
+    public Entity getFirstEntityAt(int x, int y) {
+        return entityInSlot(cellHeads[cellIndex(x, y)]);
+    }
+
+    public Entity getFirstEntityAt(Position p) {
+        return getFirstEntityAt(p.x, p.y);
+    }
+
+    public Entity getFirstEntityAt(int cell) {
+        return entityInSlot(cellHeads[cell]);
+    }
+
+    public Entity getNextEntityAt(Entity entity) {
+        return entityInSlot(nextInCell[EntityHandles.slot(entity.id)]);
+    }
+
+    private Entity entityInSlot(int slot) {
+        if (slot == -1) {
+            return null;
+        }
+        return entities.getBySlot(slot);
+    }
+
+    private void linkToCell(Entity entity, int cell) {
+        int slot = EntityHandles.slot(entity.id);
+        if (slot >= nextInCell.length) {
+            int capacity = Math.max(slot + 1, nextInCell.length * 2);
+            nextInCell = Arrays.copyOf(nextInCell, capacity);
+            prevInCell = Arrays.copyOf(prevInCell, capacity);
+        }
+        int head = cellHeads[cell];
+        prevInCell[slot] = -1;
+        nextInCell[slot] = head;
+        if (head != -1) {
+            prevInCell[head] = slot;
+        }
+        cellHeads[cell] = slot;
+        if (cellEntityCounts[cell]++ == 0) {
+            updateFree(cell);
+        }
+        if (isSolid(entity)) {
+            if (solidCounts[cell]++ == 0) {
+                cellMasks[cell] |= CELL_SOLID;
+            }
+            updateBlocked(cell);
+        }
+        long componentBits = entity.getComponentBits();
+        for (int kind = 0; kind < COUNTED_FLAGS.length; kind++) {
+            if ((componentBits & COUNTED_COMPONENT_BITS[kind]) != 0 && presenceCounts[cell * COUNTED_FLAGS.length + kind]++ == 0) {
+                cellMasks[cell] |= COUNTED_FLAGS[kind];
+            }
+        }
+    }
+
+    private void unlinkFromCell(Entity entity, int cell) {
+        int slot = EntityHandles.slot(entity.id);
+        int prev = prevInCell[slot];
+        int next = nextInCell[slot];
+        if (prev != -1) {
+            nextInCell[prev] = next;
+        } else {
+            cellHeads[cell] = next;
+        }
+        if (next != -1) {
+            prevInCell[next] = prev;
+        }
+        if (--cellEntityCounts[cell] == 0) {
+            updateFree(cell);
+        }
+        if (isSolid(entity)) {
+            if (--solidCounts[cell] == 0) {
+                cellMasks[cell] &= ~CELL_SOLID;
+            }
+            updateBlocked(cell);
+        }
+        long componentBits = entity.getComponentBits();
+        for (int kind = 0; kind < COUNTED_FLAGS.length; kind++) {
+            if ((componentBits & COUNTED_COMPONENT_BITS[kind]) != 0 && --presenceCounts[cell * COUNTED_FLAGS.length + kind] == 0) {
+                cellMasks[cell] &= ~COUNTED_FLAGS[kind];
+            }
+        }
+    }
+
+    /**
+     * Whether the cell holds an entity of any of the CELL_ kinds in flags.
+     */
+    public boolean cellContains(int cell, int flags) {
+        return (cellMasks[cell] & flags) != 0;
+    }
+
+    /**
+     * Keeps actors from moving into, spawning in or acting on a cell until the animation that reserved it resolved.
+     * Reservations of the same cell nest.
+     */
+    public void reserve(int cell) {
+        reservations[cell]++;
+    }
+
+    public void release(int cell) {
+        if (reservations[cell] == 0) {
+            throw new RuntimeException("Can't release unreserved cell " + cell);
+        }
+        reservations[cell]--;
+    }
+
+    public boolean isReserved(int cell) {
+        return reservations[cell] > 0;
     }
 
     public void addPlayer(Entity entity) {
         playerEntityId = entity.id;
         addEntity(entity);
-
-        Components.Position position = entity.getComponent(Components.Position.class);
-        updateDijkstraMap(position.x, position.y);
+        goalMaps.invalidate(GoalMaps.Goal.Player);
     }
 
     public void addExit(Entity exit) {
@@ -354,15 +669,29 @@ public class World {
     }
 
     public void addEntity(Entity entity) {
-        entities.put(entity.id, entity);
+        if (deferCommands) {
+            commandBuffer.add(entity);
+        } else {
+            addEntityNow(entity);
+        }
+    }
+
+    private void addEntityNow(Entity entity) {
+        entities.put(entity);
 
-        Components.Position position = entity.getComponent(Components.Position.class);
+        Position position = positionMapper.get(entity);
         if(position != null) {
-            getCell(position.x, position.y).entityIds.add(entity.id);
+            linkToCell(entity, cellIndex(position.x, position.y));
         }
-        if(entity.getComponent(Actor.class) != null) {
-            scheduler.addActor(entity.getComponent(Actor.class));
+        Actor actor = actorMapper.get(entity);
+        if(actor != null) {
+            scheduler.addActor(actor);
         }
+        for (int i = 0; i < families.size; i++) {
+            families.get(i).add(entity);
+        }
+        componentStore.add(entity);
+        invalidateGoalMaps(entity);
     }
 
     public Entity getPlayer() {
@@ -377,13 +706,42 @@ public class World {
         return entities.get(id);
     }
 
+    public void releaseEntitiesExcept(Entity survivor) {
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.getAt(i);
+            if (entity != survivor) {
+                entityFactory.release(entity);
+            }
+        }
+        entities.clear();
+        for (int i = 0; i < families.size; i++) {
+            families.get(i).clear();
+        }
+        componentStore.clear();
+        goalMaps.invalidateAll();
+    }
+
     public void move(Entity entity, int toX, int toY) {
-        Components.Position position = entity.getComponent(Components.Position.class);
-        getCell(position.x, position.y).entityIds.removeValue(entity.id);
+        if (deferCommands) {
+            commandBuffer.move(entity, toX, toY);
+        } else {
+            moveNow(entity, toX, toY);
+        }
+    }
+
+    public void move(Entity entity, int toCell) {
+        move(entity, getCellX(toCell), getCellY(toCell));
+    }
+
+    private void moveNow(Entity entity, int toX, int toY) {
+        Position position = positionMapper.get(entity);
+        unlinkFromCell(entity, cellIndex(position.x, position.y));
         position.set(toX, toY);
-        getCell(position.x, position.y).entityIds.add(entity.id);
+        linkToCell(entity, cellIndex(toX, toY));
         if (entity.id == playerEntityId) {
-            updateDijkstraMap(toX, toY);
+            goalMaps.playerMoved(cellIndex(toX, toY));
+        } else {
+            invalidateGoalMaps(entity);
         }
     }
 
@@ -397,46 +755,61 @@ public class World {
 
     public boolean isWalkable(Position position) {
         if (contains(position.x, position.y)) {
-            Cell cell = getCell(position.x, position.y);
-            if (cell.type.walkable) {
-                boolean containsSolidEntities = false;
-
-                for (int i = 0; i < cell.entityIds.size; i++) {
-                    int entityId = cell.entityIds.get(i);
-                    Entity entity = getEntity(entityId);
-                    Solid solid = entity.getComponent(Solid.class);
-                    if (solid != null && solid.isSolid()) {
-                        containsSolidEntities = true;
-                        break;
-                    }
+            return isWalkable(cellIndex(position.x, position.y));
+        }
+        return false;
+    }
+
+    public boolean isWalkable(int cell) {
+        boolean walkable = (blockedCells[cell >> 6] & (1L << cell)) == 0;
+        if (DEBUG_CHECK_WALKABLE && walkable != isWalkableSlow(cell)) {
+            throw new RuntimeException("Blocked cell bitmap out of sync at " + cell);
+        }
+        return walkable;
+    }
+
+    boolean isBlocked(int cell) {
+        return (blockedCells[cell >> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Number of walkable cells in direction before the first blocked cell, or RayTable.OPEN if the line is clear.
+     */
+    public int getRayLength(int cell, Direction direction) {
+        return rayTable.getLength(cell, direction);
+    }
+
+    /**
+     * The first blocked cell in direction from cell.
+     */
+    public int getRayEndCell(int cell, Direction direction) {
+        return rayTable.getEndCell(cell, direction);
+    }
+
+    private boolean isWalkableSlow(int cell) {
+        if (TileType.VALUES[tiles[cell]].walkable) {
+            for (int slot = cellHeads[cell]; slot != -1; slot = nextInCell[slot]) {
+                if (isSolid(entities.getBySlot(slot))) {
+                    return false;
                 }
-                return !containsSolidEntities;
             }
+            return true;
         }
         return false;
     }
 
     public boolean isEmpty(int x, int y) {
         if (contains(x, y)) {
-            Cell cell = getCell(x, y);
-            return cell.isWalkable() && cell.getEntityCount() == 0;
+            return isEmpty(cellIndex(x, y));
         }
         return false;
     }
 
-    public boolean isEmpty(Position position) {
-        return isEmpty(position.x, position.y);
+    public boolean isEmpty(int cell) {
+        return TileType.VALUES[tiles[cell]].walkable && cellEntityCounts[cell] == 0;
     }
 
-    public boolean containsEntityWithComponent(Position position, Class clazz) {
-        Cell cell = getCell(position.x, position.y);
-        for (int i = 0; i < cell.entityIds.size; i++) {
-            int entityId = cell.entityIds.get(i);
-            Entity entity = getEntity(entityId);
-            if (entity.getComponent(clazz) != null) {
-                return true;
-            }
-        }
-        return false;
+    public boolean isEmpty(Position position) {
+        return isEmpty(position.x, position.y);
     }
 }